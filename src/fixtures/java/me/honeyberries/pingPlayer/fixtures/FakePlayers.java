@@ -0,0 +1,197 @@
+package me.honeyberries.pingPlayer.fixtures;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.scoreboard.Scoreboard;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lightweight {@link Player} stand-ins for running the plugin's hot paths without a server.
+ * Only the methods the plugin calls on players are implemented; anything else throws,
+ * so a benchmark that starts depending on more of the API fails loudly instead of measuring nonsense.
+ */
+public final class FakePlayers {
+
+    private static final String NAME_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_";
+
+    private FakePlayers() {
+    }
+
+    /**
+     * Creates players with random, unique names of 3 to 16 characters, like real Minecraft names.
+     *
+     * @param count the number of players
+     * @param seed  the random seed, so runs are comparable
+     * @return the players
+     */
+    public static List<Player> create(int count, long seed) {
+        Random random = new Random(seed);
+        List<Player> players = new ArrayList<>(count);
+        Set<String> names = new HashSet<>();
+
+        while (players.size() < count) {
+            String name = randomName(random);
+            if (names.add(name.toLowerCase())) {
+                players.add(create(name, players.size()));
+            }
+        }
+        return players;
+    }
+
+    /**
+     * Generates a random name of 3 to 16 characters, like a real Minecraft name.
+     *
+     * @param random the random source
+     * @return the name
+     */
+    public static String randomName(Random random) {
+        int length = 3 + random.nextInt(14);
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            name.append(NAME_CHARACTERS.charAt(random.nextInt(NAME_CHARACTERS.length())));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Creates a single player.
+     *
+     * @param name     the player name
+     * @param entityId the entity id
+     * @return the player
+     */
+    public static Player create(String name, int entityId) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                new State(UUID.nameUUIDFromBytes(name.getBytes()), name, entityId));
+    }
+
+    /**
+     * Gets the address of a fake player: a unique address in 10.0.0.0/8 derived from the entity id.
+     *
+     * @param entityId the entity id
+     * @return the address
+     */
+    private static InetSocketAddress addressOf(int entityId) {
+        byte[] address = {10, (byte) (entityId >> 16), (byte) (entityId >> 8), (byte) entityId};
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(address), 25565);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sets the ping a fake player reports from {@link Player#getPing()}.
+     *
+     * @param player the fake player
+     * @param ping   the ping in milliseconds
+     */
+    public static void setPing(Player player, int ping) {
+        ((State) Proxy.getInvocationHandler(player)).ping = ping;
+    }
+
+    /**
+     * Grants or denies a permission to a fake player. Fake players have every permission until it is denied.
+     *
+     * @param player the fake player
+     * @param node   the permission node
+     * @param value  true to grant the permission, false to deny it
+     */
+    public static void setPermission(Player player, String node, boolean value) {
+        State state = (State) Proxy.getInvocationHandler(player);
+        if (value) {
+            state.deniedPermissions.remove(node);
+        } else {
+            state.deniedPermissions.add(node);
+        }
+    }
+
+    /**
+     * Counts how often the tab list name of a fake player was set, the equivalent of sent packets.
+     *
+     * @param player the fake player
+     * @return the number of tab list name updates
+     */
+    public static int getTabListUpdates(Player player) {
+        return ((State) Proxy.getInvocationHandler(player)).tabListUpdates;
+    }
+
+    /**
+     * The state of one fake player, answering the proxied method calls.
+     */
+    private static final class State implements InvocationHandler {
+        private final UUID uuid;
+        private final String name;
+        private final int entityId;
+        private final InetSocketAddress address;
+        private volatile int ping;
+        private volatile Component playerListName;
+        private volatile int tabListUpdates;
+        private volatile Scoreboard scoreboard;
+        private final Set<String> deniedPermissions = ConcurrentHashMap.newKeySet();
+
+        State(UUID uuid, String name, int entityId) {
+            this.uuid = uuid;
+            this.name = name;
+            this.entityId = entityId;
+            this.address = addressOf(entityId);
+            this.playerListName = Component.text(name);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                    return name;
+                case "getEntityId":
+                    return entityId;
+                case "getPing":
+                    return ping;
+                case "getAddress":
+                    return address;
+                case "isOnline":
+                case "isValid":
+                    return true;
+                case "hasPermission":
+                    return !deniedPermissions.contains(String.valueOf(args[0]));
+                case "getScoreboard":
+                    return scoreboard != null ? scoreboard : FakeScoreboards.getManager().getMainScoreboard();
+                case "setScoreboard":
+                    scoreboard = (Scoreboard) args[0];
+                    return null;
+                case "sendMessage":
+                    return null;
+                case "playerListName":
+                    if (args == null || args.length == 0) {
+                        return playerListName;
+                    }
+                    playerListName = (Component) args[0];
+                    tabListUpdates++;
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakePlayer[" + name + "]";
+                default:
+                    throw new UnsupportedOperationException("FakePlayer does not implement " + method.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package me.honeyberries.pingPlayer.fixtures;
+
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.ScoreboardManager;
+import org.bukkit.scoreboard.Team;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lightweight scoreboard stand-ins, served by {@link FakeServer}, so the team display modes can run without a server.
+ * Instead of sending packets, they count the team packets a real server would send to the players of a scoreboard:
+ * one for every team change and every batch of entries added to or removed from a team,
+ * and one more for every entry that is moved out of another team.
+ * Only the methods the plugin calls are implemented; anything else throws.
+ */
+public final class FakeScoreboards {
+
+    private static final Scoreboard mainScoreboard = newScoreboard();
+    private static final ScoreboardManager manager = (ScoreboardManager) Proxy.newProxyInstance(
+            ScoreboardManager.class.getClassLoader(), new Class<?>[]{ScoreboardManager.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getMainScoreboard" -> mainScoreboard;
+                case "getNewScoreboard" -> newScoreboard();
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "FakeScoreboardManager";
+                default -> throw unsupported(method);
+            });
+
+    private static long teamPackets;
+
+    private FakeScoreboards() {
+    }
+
+    /**
+     * Gets the scoreboard manager returned by {@link org.bukkit.Bukkit#getScoreboardManager()}.
+     *
+     * @return the scoreboard manager
+     */
+    public static ScoreboardManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Gets the number of team packets all scoreboards would have sent so far. A packet of the main scoreboard
+     * goes to every player who has not been given another scoreboard, any other packet to the players of its scoreboard.
+     *
+     * @return the number of team packets
+     */
+    public static long getTeamPackets() {
+        return teamPackets;
+    }
+
+    /**
+     * Creates an empty scoreboard.
+     *
+     * @return the scoreboard
+     */
+    private static Scoreboard newScoreboard() {
+        Map<String, Team> teams = new LinkedHashMap<>();
+        Map<String, Team> entryTeams = new HashMap<>();
+
+        return (Scoreboard) Proxy.newProxyInstance(Scoreboard.class.getClassLoader(), new Class<?>[]{Scoreboard.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "registerNewTeam" -> {
+                        String name = (String) args[0];
+                        if (teams.containsKey(name)) {
+                            throw new IllegalArgumentException("Team name '" + name + "' is already in use");
+                        }
+                        Team team = newTeam(name, teams, entryTeams);
+                        teams.put(name, team);
+                        teamPackets++;
+                        yield team;
+                    }
+                    case "getTeam" -> teams.get((String) args[0]);
+                    case "getTeams" -> Set.copyOf(teams.values());
+                    case "getEntryTeam" -> entryTeams.get((String) args[0]);
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "FakeScoreboard";
+                    default -> throw unsupported(method);
+                });
+    }
+
+    /**
+     * Creates a team of a scoreboard.
+     *
+     * @param name       the team name
+     * @param teams      the teams of the scoreboard, by name
+     * @param entryTeams the team of every entry on the scoreboard
+     * @return the team
+     */
+    private static Team newTeam(String name, Map<String, Team> teams, Map<String, Team> entryTeams) {
+        Set<String> entries = new LinkedHashSet<>();
+        Object[] self = new Object[1];
+
+        Team team = (Team) Proxy.newProxyInstance(Team.class.getClassLoader(), new Class<?>[]{Team.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getName" -> name;
+                    case "color", "suffix", "prefix" -> {
+                        teamPackets++;
+                        yield null;
+                    }
+                    case "addEntry", "addEntries" -> {
+                        Collection<String> added = method.getName().equals("addEntry")
+                                ? List.of((String) args[0]) : entryList(args[0]);
+                        boolean changed = false;
+                        for (String entry : added) {
+                            Team previous = entryTeams.put(entry, (Team) self[0]);
+                            if (previous != null && previous != self[0]) {
+                                previous.removeEntry(entry);
+                                entryTeams.put(entry, (Team) self[0]);
+                            }
+                            changed |= entries.add(entry);
+                        }
+                        if (changed) {
+                            teamPackets++;
+                        }
+                        yield null;
+                    }
+                    case "removeEntry", "removeEntries" -> {
+                        Collection<String> removed = method.getName().equals("removeEntry")
+                                ? List.of((String) args[0]) : entryList(args[0]);
+                        boolean changed = false;
+                        for (String entry : removed) {
+                            if (entries.remove(entry)) {
+                                entryTeams.remove(entry, self[0]);
+                                changed = true;
+                            }
+                        }
+                        if (changed) {
+                            teamPackets++;
+                        }
+                        yield changed;
+                    }
+                    case "hasEntry" -> entries.contains((String) args[0]);
+                    case "getEntries" -> Collections.unmodifiableSet(entries);
+                    case "getSize" -> entries.size();
+                    case "unregister" -> {
+                        entries.forEach(entry -> entryTeams.remove(entry, self[0]));
+                        entries.clear();
+                        teams.remove(name);
+                        teamPackets++;
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "FakeTeam[" + name + "]";
+                    default -> throw unsupported(method);
+                });
+        self[0] = team;
+        return team;
+    }
+
+    /**
+     * Gets the entries of an addEntries or removeEntries call, which take either a collection or varargs.
+     *
+     * @param argument the argument of the call
+     * @return the entries
+     */
+    @SuppressWarnings("unchecked")
+    private static Collection<String> entryList(Object argument) {
+        return argument instanceof String[] array ? List.of(array) : (Collection<String>) argument;
+    }
+
+    private static UnsupportedOperationException unsupported(Method method) {
+        return new UnsupportedOperationException("FakeScoreboards does not implement " + method.getName());
+    }
+}
@@ -0,0 +1,106 @@
+package me.honeyberries.pingPlayer.fixtures;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A minimal {@link Server} stand-in, so code that calls {@link Bukkit#getOnlinePlayers()} or uses the main scoreboard
+ * can run without a server.
+ * The online players are a list owned by the fake server; anything else the plugin does not use
+ * returns null, 0 or false.
+ */
+public final class FakeServer {
+
+    private static final List<Player> onlinePlayers = new ArrayList<>();
+    private static final Collection<Player> onlinePlayersView = Collections.unmodifiableList(onlinePlayers);
+    private static final Logger logger = Logger.getLogger("FakeServer");
+
+    private FakeServer() {
+    }
+
+    /**
+     * Installs the fake server as the Bukkit singleton, unless it is installed already.
+     * The field is set directly, as {@link Bukkit#setServer(Server)} also logs version information
+     * that a fake server cannot provide.
+     */
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+
+        Server server = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getOnlinePlayers" -> onlinePlayersView;
+                    case "getLogger" -> logger;
+                    case "getName" -> "FakeServer";
+                    case "getVersion", "getBukkitVersion", "getMinecraftVersion" -> "0";
+                    case "isPrimaryThread" -> true;
+                    case "getScoreboardManager" -> FakeScoreboards.getManager();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "FakeServer";
+                    default -> defaultValue(method.getReturnType());
+                });
+
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not install the fake server", e);
+        }
+    }
+
+    /**
+     * Gets the mutable list of online players returned by {@link Bukkit#getOnlinePlayers()}.
+     * Only change it from the thread that runs the code under test.
+     *
+     * @return the online players
+     */
+    public static List<Player> getOnlinePlayers() {
+        return onlinePlayers;
+    }
+
+    /**
+     * Gets the value a method of the fake server returns when it is not implemented.
+     *
+     * @param type the return type
+     * @return null for objects, otherwise zero or false
+     */
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,107 @@
+package me.honeyberries.pingPlayer.benchmark;
+
+import me.honeyberries.pingPlayer.LatencyClassifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures classifying the ping of every online player into a latency tier, as {@code PingCommand}
+ * and {@code TabUpdateTask} do through {@link LatencyClassifier}, against the chain of threshold
+ * comparisons the plugin used before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ClassificationBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int players;
+
+    private final List<Integer> thresholds = List.of(50, 100, 200, 300);
+    private LatencyClassifier classifier;
+    private int[] pings;
+    private int[] tiers;
+
+    @Setup
+    public void setup() {
+        classifier = LatencyClassifier.compile(LatencyClassifier.defaultTiers(thresholds));
+
+        // Mostly low pings with a long tail, including some beyond the lookup table
+        Random random = new Random(7);
+        pings = new int[players];
+        tiers = new int[players];
+        for (int i = 0; i < players; i++) {
+            pings[i] = random.nextInt(100) == 0 ? 1000 + random.nextInt(20000) : 15 + (int) (-Math.log(1 - random.nextDouble()) * 60);
+            tiers[i] = classifier.classify(pings[i]);
+        }
+    }
+
+    /**
+     * Classifies every ping with the lookup table.
+     */
+    @Benchmark
+    public void classify(Blackhole blackhole) {
+        for (int ping : pings) {
+            blackhole.consume(classifier.classify(ping));
+        }
+    }
+
+    /**
+     * Classifies every ping with a hysteresis margin around the previous tier.
+     */
+    @Benchmark
+    public void classifyWithHysteresis(Blackhole blackhole) {
+        for (int i = 0; i < pings.length; i++) {
+            blackhole.consume(classifier.classify(pings[i], tiers[i], 10));
+        }
+    }
+
+    /**
+     * Classifies every ping and looks up the shared suffix component.
+     */
+    @Benchmark
+    public void classifyAndSuffix(Blackhole blackhole) {
+        for (int ping : pings) {
+            blackhole.consume(classifier.suffix(classifier.classify(ping), ping));
+        }
+    }
+
+    /**
+     * Baseline: the comparison chain over the boxed threshold list that the plugin used before the classifier.
+     */
+    @Benchmark
+    public void thresholdChain(Blackhole blackhole) {
+        for (int ping : pings) {
+            int tier;
+            if (ping <= thresholds.get(0)) {
+                tier = 0;
+            } else if (ping <= thresholds.get(1)) {
+                tier = 1;
+            } else if (ping <= thresholds.get(2)) {
+                tier = 2;
+            } else if (ping <= thresholds.get(3)) {
+                tier = 3;
+            } else {
+                tier = 4;
+            }
+            blackhole.consume(tier);
+        }
+    }
+}
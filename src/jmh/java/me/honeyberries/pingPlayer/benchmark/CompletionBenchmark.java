@@ -0,0 +1,80 @@
+package me.honeyberries.pingPlayer.benchmark;
+
+import me.honeyberries.pingPlayer.PlayerNameIndex;
+import me.honeyberries.pingPlayer.fixtures.FakePlayers;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures completing the first argument of /ping and /ip: the shared {@link PlayerNameIndex} lookup
+ * the commands use, against filtering every online player name, which they did before.
+ * An empty prefix matches everyone, a single letter matches a few percent of the players,
+ * and a longer prefix matches almost no one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompletionBenchmark {
+
+    private static final int LIMIT = 50;
+
+    @Param({"100", "1000", "5000"})
+    public int players;
+
+    @Param({"", "k", "xq7"})
+    public String prefix;
+
+    private List<Player> online;
+    private PlayerNameIndex index;
+
+    @Setup
+    public void setup() {
+        online = FakePlayers.create(players, 42);
+        index = new PlayerNameIndex();
+        online.forEach(player -> index.add(player.getName()));
+    }
+
+    /**
+     * Completes from the sorted name index, like the commands do now.
+     *
+     * @return the suggestions
+     */
+    @Benchmark
+    public List<String> nameIndex() {
+        List<String> completions = index.complete(prefix, LIMIT);
+        if ("help".startsWith(prefix)) {
+            completions.add("help");
+        }
+        return completions;
+    }
+
+    /**
+     * Baseline: filters the names of all online players, like the commands did before the index.
+     *
+     * @return the suggestions
+     */
+    @Benchmark
+    public List<String> streamFilter() {
+        return Stream.concat(online.stream().map(Player::getName), Stream.of("help"))
+                .filter(option -> option.toLowerCase().startsWith(prefix))
+                .collect(Collectors.toList());
+    }
+}
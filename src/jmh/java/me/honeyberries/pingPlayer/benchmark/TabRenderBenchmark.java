@@ -0,0 +1,128 @@
+package me.honeyberries.pingPlayer.benchmark;
+
+import me.honeyberries.pingPlayer.LatencyClassifier;
+import me.honeyberries.pingPlayer.LatencyHistogram;
+import me.honeyberries.pingPlayer.PingSampler;
+import me.honeyberries.pingPlayer.TabRenderCache;
+import me.honeyberries.pingPlayer.fixtures.FakePlayers;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one tab update pass over all online players, as {@code TabUpdateTask} runs it:
+ * classifying the ping, rendering the suffix and skipping players whose displayed ping did not change.
+ * The "stable" pings repeat every round, so most updates are skipped; the "changing" pings jitter
+ * by up to 15 ms every round, so most updates are sent.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TabRenderBenchmark {
+
+    private static final int ROUNDS = 64;
+
+    @Param({"100", "1000", "5000"})
+    public int players;
+
+    @Param({"stable", "changing"})
+    public String pings;
+
+    private List<Player> online;
+    private int[][] rounds;
+    private int round;
+    private LatencyClassifier classifier;
+    private TabRenderCache renderCache;
+    private PingSampler sampler;
+    private LatencyHistogram histogram;
+
+    @Setup
+    public void setup() {
+        online = FakePlayers.create(players, 42);
+        classifier = LatencyClassifier.compile(LatencyClassifier.defaultTiers(List.of(50, 100, 200, 300)));
+        renderCache = new TabRenderCache();
+        sampler = new PingSampler();
+        histogram = new LatencyHistogram();
+        online.forEach(renderCache::track);
+        online.forEach(sampler::track);
+
+        // Give every player a base ping from a long-tailed distribution, then jitter it per round if requested
+        Random random = new Random(7);
+        rounds = new int[ROUNDS][players];
+        for (int i = 0; i < players; i++) {
+            int base = 15 + (int) (-Math.log(1 - random.nextDouble()) * 60);
+            for (int r = 0; r < ROUNDS; r++) {
+                rounds[r][i] = pings.equals("stable") ? base : Math.max(0, base + random.nextInt(31) - 15);
+            }
+        }
+    }
+
+    /**
+     * Renders the tab list names of all players.
+     *
+     * @return the number of names that would be sent
+     */
+    @Benchmark
+    public int renderPass() {
+        return render(0);
+    }
+
+    /**
+     * Renders the tab list names of all players with a 10 ms hysteresis margin on the tiers.
+     *
+     * @return the number of names that would be sent
+     */
+    @Benchmark
+    public int renderPassWithHysteresis() {
+        return render(10);
+    }
+
+    /**
+     * Runs the whole per-player update: recording the sample in the rolling history and the latency
+     * histogram, then rendering the tab list name.
+     *
+     * @return the number of names that would be sent
+     */
+    @Benchmark
+    public int updatePass() {
+        int[] current = rounds[round++ & (ROUNDS - 1)];
+        int sent = 0;
+        for (int i = 0; i < current.length; i++) {
+            Player player = online.get(i);
+            int ping = current[i];
+            sampler.record(player, ping);
+            histogram.record(player, ping, classifier);
+            if (renderCache.render(player, classifier, ping, 0) != null) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    private int render(int hysteresis) {
+        int[] current = rounds[round++ & (ROUNDS - 1)];
+        int sent = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (renderCache.render(online.get(i), classifier, current[i], hysteresis) != null) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+}
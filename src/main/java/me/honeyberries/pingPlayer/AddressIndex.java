@@ -0,0 +1,285 @@
+package me.honeyberries.pingPlayer;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * An index of the online players by their IP address, used by the /ip subcommands.
+ * <p>
+ * Every address is stored as 16 bytes, with IPv4 addresses mapped into IPv6 ({@code ::ffff:a.b.c.d}),
+ * and keyed by its fixed-width hex form in a sorted map. The addresses of a subnet are therefore one contiguous
+ * range of keys, so a lookup of any /24, /48 or other prefix only visits the matching addresses.
+ * The addresses shared by more than one player are kept in a separate set, so listing them never scans every player.
+ * <p>
+ * The index is updated when players join and quit. Updates are synchronized; lookups can run on any thread.
+ */
+public class AddressIndex {
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    // The first 12 bytes of an IPv4-mapped IPv6 address
+    private static final byte[] IPV4_MAPPED_PREFIX = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff};
+
+    // The players on every address, by the hex key of the address
+    private final ConcurrentSkipListMap<String, Group> groups = new ConcurrentSkipListMap<>();
+
+    // The keys of the addresses with more than one player
+    private final ConcurrentSkipListSet<String> shared = new ConcurrentSkipListSet<>();
+
+    // The address key of every indexed player, so they can be removed after they disconnected
+    private final Map<UUID, String> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a player with their current address. Called when the player joins.
+     * Players without an address are ignored.
+     *
+     * @param player the player
+     */
+    public synchronized void add(Player player) {
+        InetSocketAddress socketAddress = player.getAddress();
+        if (socketAddress == null || socketAddress.getAddress() == null) {
+            return;
+        }
+
+        remove(player);
+        InetAddress address = socketAddress.getAddress();
+        String key = HEX.formatHex(toBytes(address));
+        Group group = groups.computeIfAbsent(key, k -> new Group(address.getHostAddress()));
+        group.players.put(player.getUniqueId(), player.getName());
+        keys.put(player.getUniqueId(), key);
+
+        if (group.players.size() > 1) {
+            shared.add(key);
+        }
+    }
+
+    /**
+     * Removes a player. Called when the player quits.
+     *
+     * @param player the player
+     */
+    public synchronized void remove(Player player) {
+        String key = keys.remove(player.getUniqueId());
+        if (key == null) {
+            return;
+        }
+
+        Group group = groups.get(key);
+        group.players.remove(player.getUniqueId());
+        if (group.players.size() < 2) {
+            shared.remove(key);
+        }
+        if (group.players.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+
+    /**
+     * Finds the address of a player and everyone else who is online from it.
+     *
+     * @param uuid the UUID of the player
+     * @return the address and its players, or null if the player is not indexed
+     */
+    public @Nullable Match sharing(UUID uuid) {
+        String key = keys.get(uuid);
+        Group group = key != null ? groups.get(key) : null;
+        return group != null ? group.toMatch() : null;
+    }
+
+    /**
+     * Finds the online players in an address range.
+     *
+     * @param range the address range
+     * @param limit the maximum number of addresses to return
+     * @return the matching addresses and their players, in address order
+     */
+    public List<Match> lookup(Range range, int limit) {
+        NavigableMap<String, Group> matches = groups.subMap(range.from, true, range.to, true);
+        return toMatches(matches.values(), limit);
+    }
+
+    /**
+     * Lists the addresses that more than one player is online from.
+     *
+     * @param limit the maximum number of addresses to return
+     * @return the shared addresses and their players, in address order
+     */
+    public List<Match> duplicates(int limit) {
+        List<Group> found = new ArrayList<>();
+        for (String key : shared) {
+            if (found.size() >= limit) {
+                break;
+            }
+            Group group = groups.get(key);
+            if (group != null) {
+                found.add(group);
+            }
+        }
+        return toMatches(found, limit);
+    }
+
+    /**
+     * Gets the number of addresses with more than one player.
+     *
+     * @return the number of shared addresses
+     */
+    public int getSharedCount() {
+        return shared.size();
+    }
+
+    /**
+     * Parses an address or a CIDR range, like {@code 203.0.113.7}, {@code 203.0.113.0/24} or {@code 2001:db8::/48}.
+     * Only address literals are accepted, so parsing never resolves a host name.
+     *
+     * @param text the address or range
+     * @return the range
+     * @throws IllegalArgumentException if the text is not an address or range
+     */
+    public static Range parseRange(String text) {
+        int slash = text.indexOf('/');
+        String literal = slash < 0 ? text : text.substring(0, slash);
+        boolean ipv6 = literal.indexOf(':') >= 0 && literal.chars().allMatch(c -> Character.digit(c, 16) >= 0 || c == '.' || c == ':');
+        if (!ipv6 && !IPV4_LITERAL.matcher(literal).matches()) {
+            throw new IllegalArgumentException("Not an IP address: " + literal);
+        }
+
+        InetAddress address;
+        try {
+            // IPv4 addresses are built from their octets; in brackets, an IPv6 literal is never looked up as a host name
+            address = ipv6 ? InetAddress.getByName("[" + literal + "]") : InetAddress.getByAddress(parseIpv4(literal));
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Not an IP address: " + literal);
+        }
+
+        // IPv4 prefixes are shifted past the 96 bits of the IPv4-mapped prefix. The prefix of an IPv6 literal
+        // counts 128 bits even when it is IPv4-mapped and parses to an IPv4 address, like ::ffff:1.2.3.4/120
+        int bits = ipv6 ? 128 : 32;
+        int prefix = bits;
+        if (slash >= 0) {
+            try {
+                prefix = Integer.parseInt(text.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length: " + text.substring(slash + 1));
+            }
+            if (prefix < 0 || prefix > bits) {
+                throw new IllegalArgumentException("The prefix length must be between 0 and " + bits + ".");
+            }
+        }
+        prefix += 128 - bits;
+
+        // Clear the host bits for the first address of the range, and set them for the last one
+        byte[] from = toBytes(address);
+        byte[] to = from.clone();
+        for (int i = 0; i < 16; i++) {
+            int keep = Math.max(0, Math.min(8, prefix - i * 8));
+            int hostMask = 0xff >>> keep;
+            from[i] &= (byte) ~hostMask;
+            to[i] |= (byte) hostMask;
+        }
+        return new Range(HEX.formatHex(from), HEX.formatHex(to));
+    }
+
+    /**
+     * Parses the four octets of a dotted IPv4 address.
+     *
+     * @param literal the address, matching {@link #IPV4_LITERAL}
+     * @return the four bytes of the address
+     * @throws IllegalArgumentException if an octet is greater than 255
+     */
+    private static byte[] parseIpv4(String literal) {
+        String[] octets = literal.split("\\.");
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            int octet = Integer.parseInt(octets[i]);
+            if (octet > 255) {
+                throw new IllegalArgumentException("Not an IP address: " + literal);
+            }
+            bytes[i] = (byte) octet;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the 16 byte form of an address, mapping IPv4 addresses into IPv6.
+     *
+     * @param address the address
+     * @return the 16 bytes of the address
+     */
+    private static byte[] toBytes(InetAddress address) {
+        byte[] raw = address.getAddress();
+        if (raw.length == 16) {
+            return raw;
+        }
+
+        byte[] mapped = new byte[16];
+        System.arraycopy(IPV4_MAPPED_PREFIX, 0, mapped, 0, IPV4_MAPPED_PREFIX.length);
+        System.arraycopy(raw, 0, mapped, IPV4_MAPPED_PREFIX.length, raw.length);
+        return mapped;
+    }
+
+    private static List<Match> toMatches(Collection<Group> groups, int limit) {
+        List<Match> matches = new ArrayList<>();
+        for (Group group : groups) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            Match match = group.toMatch();
+            if (!match.players().isEmpty()) {
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * The online players on one address.
+     */
+    private static final class Group {
+        private final String address;
+        private final Map<UUID, String> players = new ConcurrentHashMap<>();
+
+        Group(String address) {
+            this.address = address;
+        }
+
+        Match toMatch() {
+            List<String> names = new ArrayList<>(players.values());
+            names.sort(String.CASE_INSENSITIVE_ORDER);
+            return new Match(address, names);
+        }
+    }
+
+    /**
+     * A range of addresses, as the hex keys of its first and last address.
+     *
+     * @param from the key of the first address
+     * @param to   the key of the last address
+     */
+    public record Range(String from, String to) {
+    }
+
+    /**
+     * An address and the players online from it.
+     *
+     * @param address the address, as reported by the server
+     * @param players the names of the players, sorted
+     */
+    public record Match(String address, List<String> players) {
+    }
+}
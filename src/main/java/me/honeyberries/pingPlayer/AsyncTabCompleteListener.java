@@ -0,0 +1,100 @@
+package me.honeyberries.pingPlayer;
+
+import com.destroystokyo.paper.event.server.AsyncTabCompleteEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Answers tab completion for the plugin commands off the main thread using Paper's {@link AsyncTabCompleteEvent}.
+ * The commands' {@link TabCompleter} implementations only read thread-safe snapshots (the {@link PlayerNameIndex},
+ * the settings snapshot and constant subcommand lists), so they can be called directly from the async event.
+ * If the event is not fired, or a completer has no answer, the server falls back to the regular
+ * {@link TabCompleter#onTabComplete} call on the main thread.
+ */
+public class AsyncTabCompleteListener implements Listener {
+
+    private final PingPlayer plugin = PingPlayer.getInstance();
+
+    // Filled in while enabling, before this listener is registered, and only read afterwards
+    private final Map<String, Completion> completions = new HashMap<>();
+
+    /**
+     * Registers a command so its completions are answered asynchronously.
+     * Must be called before the listener is registered.
+     * A label without the plugin namespace is only registered if it runs this command,
+     * so an alias that another plugin or the server owns keeps its own completions.
+     *
+     * @param command   the plugin command
+     * @param completer the tab completer of the command
+     */
+    public void register(PluginCommand command, TabCompleter completer) {
+        Completion completion = new Completion(command, completer);
+        String namespace = plugin.getName().toLowerCase(Locale.ROOT) + ":";
+
+        // Register the command name and all aliases, with and without the plugin namespace
+        List<String> labels = new ArrayList<>(command.getAliases());
+        labels.add(command.getName());
+        for (String label : labels) {
+            String key = label.toLowerCase(Locale.ROOT);
+            completions.put(namespace + key, completion);
+            if (Bukkit.getCommandMap().getCommand(key) == command) {
+                completions.put(key, completion);
+            }
+        }
+    }
+
+    /**
+     * Completes the arguments of the plugin commands asynchronously.
+     *
+     * @param event the async tab complete event
+     */
+    @EventHandler(ignoreCancelled = true)
+    public void onAsyncTabComplete(AsyncTabCompleteEvent event) {
+        if (!event.isCommand() || event.isHandled()) {
+            return;
+        }
+
+        // Split the buffer into the command label and its arguments
+        String buffer = event.getBuffer();
+        int start = buffer.startsWith("/") ? 1 : 0;
+        int space = buffer.indexOf(' ', start);
+        if (space < 0) {
+            // Still typing the command name, which the server completes itself
+            return;
+        }
+
+        String label = buffer.substring(start, space);
+        Completion completion = completions.get(label.toLowerCase(Locale.ROOT));
+        if (completion == null) {
+            return;
+        }
+
+        // Keep the trailing empty argument so "/ping " completes the first argument
+        String[] args = buffer.substring(space + 1).split(" ", -1);
+        List<String> suggestions = completion.completer().onTabComplete(event.getSender(), completion.command(), label, args);
+        if (suggestions == null) {
+            return;
+        }
+
+        event.setCompletions(suggestions);
+        event.setHandled(true);
+    }
+
+    /**
+     * A command and the tab completer that answers for it.
+     *
+     * @param command   the plugin command
+     * @param completer the tab completer of the command
+     */
+    private record Completion(PluginCommand command, TabCompleter completer) {
+    }
+}
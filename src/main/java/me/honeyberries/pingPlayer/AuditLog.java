@@ -0,0 +1,453 @@
+package me.honeyberries.pingPlayer;
+
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Records who looked up whose ping or IP address in a rolling file in the audit folder of the plugin's data folder.
+ * <p>
+ * Commands only append a record to a bounded lock-free queue, so they never wait for the disk.
+ * A background thread drains the queue in batches and writes one JSON object per line to {@code audit.log}.
+ * The file is rotated when it reaches the configured size or age, and only the newest rotated files are kept.
+ * When the queue is full, a record is either dropped or the command waits a short while for the writer,
+ * depending on the settings.
+ */
+public class AuditLog {
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    // Commands run on the server thread, so a full queue may only hold them up for a fraction of a tick
+    private static final long BLOCK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final String CURRENT_FILE = "audit.log";
+    private static final String ROTATED_PREFIX = "audit-";
+    private static final String ROTATED_SUFFIX = ".log";
+    private static final String TIME_PREFIX = "{\"time\":\"";
+    private static final DateTimeFormatter ROTATED_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmssSSS").withZone(ZoneOffset.UTC);
+
+    /**
+     * The queries that are audited.
+     */
+    public enum Action {
+        PING("ping"),
+        PING_STATS("ping-stats"),
+        PING_RANKING("ping-ranking"),
+        IP("ip"),
+        IP_SHARED("ip-shared"),
+        IP_LOOKUP("ip-lookup"),
+        IP_DUPES("ip-dupes");
+
+        private final String key;
+
+        Action(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Gets the name of the action in the audit log.
+         *
+         * @return the key
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private final Path directory;
+    private final Logger logger;
+
+    // The records waiting for the writer, and how many there are
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder droppedRecords = new LongAdder();
+
+    private volatile int capacity;
+    private volatile boolean blockWhenFull;
+    private volatile long maxFileBytes;
+    private volatile long rotateMillis;
+    private volatile int maxFiles;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    // The current file, only used by the writer thread; null while it is not open
+    private OutputStream output;
+    private long fileSize;
+    private long fileStarted;
+
+    /**
+     * Creates the audit log of the running plugin, in the audit folder of its data folder.
+     */
+    public AuditLog() {
+        this(PingPlayer.getInstance().getDataFolder().toPath().resolve("audit"), PingPlayer.getInstance().getLogger());
+    }
+
+    /**
+     * Creates an audit log in a folder.
+     *
+     * @param directory the folder of the log files
+     * @param logger    the logger for warnings
+     */
+    public AuditLog(Path directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+    }
+
+    /**
+     * Applies the queue and rotation settings. Takes effect immediately, also while running.
+     *
+     * @param settings the settings snapshot
+     */
+    public void configure(PingSettings.Snapshot settings) {
+        capacity = settings.audit().queueCapacity();
+        blockWhenFull = settings.audit().blockWhenFull();
+        maxFileBytes = settings.audit().fileSizeKb() * 1024L;
+        rotateMillis = TimeUnit.MINUTES.toMillis(settings.audit().rotateMinutes());
+        maxFiles = settings.audit().maxFiles();
+    }
+
+    /**
+     * Starts the writer thread, unless it is already running.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+
+        running = true;
+        thread = new Thread(this::run, "PingPlayer Audit Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread after it wrote the records that are still queued.
+     */
+    public synchronized void stop() {
+        Thread writer = thread;
+        if (writer == null) {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Queues an audit record. Does nothing if the audit log is not running.
+     * If the queue is full, the record is dropped, or with the block policy the caller waits up to a second
+     * for the writer to make room before it is dropped.
+     *
+     * @param sender the sender of the command
+     * @param action the query
+     * @param target the player or address that was looked up, or null
+     * @param value  the answer, like a ping or an address, or null
+     */
+    public void record(CommandSender sender, Action action, @Nullable String target, @Nullable String value) {
+        if (!running) {
+            return;
+        }
+
+        if (!reserve() && !(blockWhenFull && awaitRoom())) {
+            droppedRecords.increment();
+            return;
+        }
+        queue.offer(new Entry(System.currentTimeMillis(), sender.getName(), action, target, value));
+    }
+
+    /**
+     * Checks whether the audit log is recording.
+     *
+     * @return true if the writer thread is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the number of records that were dropped because the queue was full.
+     *
+     * @return the number of dropped records
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * Takes a slot in the queue, if there is one.
+     *
+     * @return true if a slot was taken
+     */
+    private boolean reserve() {
+        while (true) {
+            int size = queued.get();
+            if (size >= capacity) {
+                return false;
+            }
+            if (queued.compareAndSet(size, size + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Wakes up the writer and waits for it to free a slot in the queue.
+     *
+     * @return true if a slot was taken before the timeout
+     */
+    private boolean awaitRoom() {
+        long deadline = System.nanoTime() + BLOCK_TIMEOUT_NANOS;
+        while (running && System.nanoTime() < deadline) {
+            Thread writer = thread;
+            if (writer != null) {
+                LockSupport.unpark(writer);
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            if (reserve()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The writer loop: writes the queued records in batches until the audit log is stopped and the queue is empty.
+     */
+    private void run() {
+        try {
+            Files.createDirectories(directory);
+            open();
+        } catch (IOException e) {
+            e.printStackTrace();
+            logger.warning("Failed to open the audit log in " + directory + ". Ping and IP queries are not audited.");
+            running = false;
+            return;
+        }
+
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            Entry entry;
+            while (batch.size() < BATCH_SIZE && (entry = queue.poll()) != null) {
+                batch.add(entry);
+            }
+            queued.addAndGet(-batch.size());
+
+            try {
+                if (batch.isEmpty()) {
+                    if (System.currentTimeMillis() - fileStarted >= rotateMillis && fileSize > 0) {
+                        rotate();
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                write(batch);
+            } catch (IOException e) {
+                e.printStackTrace();
+                logger.warning("Failed to write " + batch.size() + " audit records.");
+                droppedRecords.add(batch.size());
+            }
+            batch.clear();
+        }
+
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of records, rotating the file when it would grow past its size or age limit.
+     *
+     * @param batch the records
+     * @throws IOException if the file could not be written or rotated
+     */
+    private void write(List<Entry> batch) throws IOException {
+        // Reopen the file if an earlier rotation failed to
+        if (output == null) {
+            open();
+        }
+
+        StringBuilder line = new StringBuilder(160);
+        for (Entry entry : batch) {
+            line.setLength(0);
+            entry.appendJson(line);
+            byte[] bytes = line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+
+            if (fileSize > 0 && (fileSize + bytes.length > maxFileBytes || entry.timestamp - fileStarted >= rotateMillis)) {
+                rotate();
+            }
+            output.write(bytes);
+            fileSize += bytes.length;
+        }
+        output.flush();
+    }
+
+    /**
+     * Opens the current file for appending.
+     * The age of an existing file is taken from its first record, as many file systems do not keep a creation time.
+     *
+     * @throws IOException if the file could not be opened
+     */
+    private void open() throws IOException {
+        Path file = directory.resolve(CURRENT_FILE);
+        if (Files.exists(file)) {
+            fileSize = Files.size(file);
+            fileStarted = readStartTime(file);
+        } else {
+            fileSize = 0;
+            fileStarted = System.currentTimeMillis();
+        }
+        output = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Gets the time of the first record in a file.
+     *
+     * @param file the file
+     * @return the time of the first record in milliseconds since the epoch, or now if the file has no readable record
+     * @throws IOException if the file could not be read
+     */
+    private static long readStartTime(Path file) throws IOException {
+        String first;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            first = reader.readLine();
+        }
+        if (first != null && first.startsWith(TIME_PREFIX)) {
+            int end = first.indexOf('"', TIME_PREFIX.length());
+            try {
+                return Instant.parse(first.substring(TIME_PREFIX.length(), end)).toEpochMilli();
+            } catch (RuntimeException e) {
+                // Fall through to a fresh start, like for an empty file
+            }
+        }
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Renames the current file after the time it was started, opens a new one and deletes the oldest rotated files.
+     * If the file cannot be renamed, it is opened again and written on, and the next rotation is only tried
+     * once it grew by another full size or age limit, so a failing rename does not cost any records.
+     *
+     * @throws IOException if the file could not be opened again or the old files could not be deleted
+     */
+    private void rotate() throws IOException {
+        if (output != null) {
+            try {
+                output.close();
+            } finally {
+                output = null;
+            }
+        }
+
+        try {
+            // Move the name a millisecond ahead if it is taken, so the names still sort in rotation order
+            long started = fileStarted;
+            Path rotated;
+            do {
+                rotated = directory.resolve(ROTATED_PREFIX + ROTATED_NAME.format(Instant.ofEpochMilli(started++)) + ROTATED_SUFFIX);
+            } while (Files.exists(rotated));
+            Files.move(directory.resolve(CURRENT_FILE), rotated);
+        } catch (IOException e) {
+            e.printStackTrace();
+            logger.warning("Failed to rotate the audit log. Writing on to " + CURRENT_FILE + ".");
+            open();
+            fileSize = 0;
+            fileStarted = System.currentTimeMillis();
+            return;
+        }
+        open();
+
+        // Keep only the newest rotated files; their names sort by the time they were started
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> {
+                String fileName = path.getFileName().toString();
+                return fileName.startsWith(ROTATED_PREFIX) && fileName.endsWith(ROTATED_SUFFIX);
+            }).sorted().toList();
+        }
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    /**
+     * Escapes a string for a JSON string literal.
+     */
+    private static void appendJsonString(StringBuilder out, @Nullable String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * One audit record.
+     *
+     * @param timestamp the time of the query, in milliseconds since the epoch
+     * @param sender    the name of the command sender
+     * @param action    the query
+     * @param target    the player or address that was looked up, or null
+     * @param value     the answer, or null
+     */
+    private record Entry(long timestamp, String sender, Action action, @Nullable String target, @Nullable String value) {
+
+        void appendJson(StringBuilder out) {
+            out.append("{\"time\":\"").append(Instant.ofEpochMilli(timestamp)).append("\",\"sender\":");
+            appendJsonString(out, sender);
+            out.append(",\"action\":\"").append(action.getKey()).append("\",\"target\":");
+            appendJsonString(out, target);
+            out.append(",\"value\":");
+            appendJsonString(out, value);
+            out.append('}');
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package me.honeyberries.pingPlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Writes a configuration file in the background.
+ * Changes only mark the file as dirty; a single write is scheduled off the main thread a moment later,
+ * so several changes in a row are combined into one write. The file is written to a temporary file first
+ * and then renamed over the original, so a crash never leaves a half-written config behind.
+ */
+public class ConfigPersister {
+
+    // How long to wait for more changes before writing, in ticks
+    private static final long WRITE_DELAY_TICKS = 20;
+
+    private final PingPlayer plugin = PingPlayer.getInstance();
+    private final File file;
+    private final Supplier<String> serializer;
+
+    private final DurationCounter writeDurations;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private volatile boolean dirty;
+
+    /**
+     * Creates a persister for a file.
+     *
+     * @param file       the file to write
+     * @param serializer produces the current file contents; it is called on the writing thread,
+     *                   so it must take care of its own synchronization
+     * @param writeDurations records how long each write took
+     */
+    public ConfigPersister(File file, Supplier<String> serializer, DurationCounter writeDurations) {
+        this.file = file;
+        this.serializer = serializer;
+        this.writeDurations = writeDurations;
+    }
+
+    /**
+     * Marks the file as changed and schedules a background write, unless one is already pending.
+     */
+    public void markDirty() {
+        dirty = true;
+        if (writeScheduled.compareAndSet(false, true)) {
+            Scheduler.runTaskLaterAsynchronously(this::flush, WRITE_DELAY_TICKS);
+        }
+    }
+
+    /**
+     * Writes the file now if it has unsaved changes. This blocks until the write is done,
+     * so it should only be called off the main thread or when the plugin is shutting down.
+     */
+    public synchronized void flush() {
+        writeScheduled.set(false);
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+
+        try {
+            long start = System.nanoTime();
+            write(serializer.get());
+            writeDurations.record(System.nanoTime() - start);
+        } catch (IOException e) {
+            e.printStackTrace();
+            plugin.getLogger().warning("Failed to save configuration file.");
+        }
+    }
+
+    /**
+     * Writes the contents to a temporary file next to the target and moves it over the target.
+     *
+     * @param contents the file contents
+     * @throws IOException if the file cannot be written
+     */
+    private void write(String contents) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+
+        Files.createDirectories(target.getParent());
+        Files.writeString(temp, contents, StandardCharsets.UTF_8);
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package me.honeyberries.pingPlayer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the plugin's data folder and reloads config.yml when it is changed on disk.
+ * Editors often write a file in several steps, so the reload only happens once no further change
+ * was seen for the configured debounce delay. Writes made by the plugin itself are ignored.
+ */
+public class ConfigWatcher {
+
+    private final PingPlayer plugin = PingPlayer.getInstance();
+
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * Starts watching config.yml, unless the watcher is already running.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            plugin.getDataFolder().toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            e.printStackTrace();
+            plugin.getLogger().warning("Failed to watch config.yml for changes. Auto reload is disabled.");
+            return;
+        }
+
+        thread = new Thread(() -> watch(watchService), "PingPlayer Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching config.yml.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        thread.interrupt();
+        thread = null;
+        watchService = null;
+    }
+
+    /**
+     * Waits for changes to config.yml and reloads it once the changes settled.
+     *
+     * @param watchService the watch service registered on the data folder
+     */
+    private void watch(WatchService watchService) {
+        long reloadAt = 0;
+        boolean pending = false;
+
+        try {
+            while (true) {
+                // Wait for the next event, or until the pending reload is due
+                WatchKey key = pending
+                        ? watchService.poll(Math.max(0, reloadAt - System.nanoTime()), TimeUnit.NANOSECONDS)
+                        : watchService.take();
+
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path path && path.toString().equals("config.yml")) {
+                            pending = true;
+                            reloadAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PingSettings.getInstance().getAutoReloadDebounce());
+                        }
+                    }
+                    key.reset();
+                }
+
+                if (pending && System.nanoTime() - reloadAt >= 0) {
+                    pending = false;
+                    if (PingSettings.getInstance().hasChangedOnDisk()) {
+                        plugin.getLogger().info("config.yml changed on disk, reloading...");
+                        plugin.reloadSettings(null);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher was stopped
+        }
+    }
+}
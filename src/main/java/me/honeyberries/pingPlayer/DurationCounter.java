@@ -0,0 +1,41 @@
+package me.honeyberries.pingPlayer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often an operation ran and how long it took in total.
+ * Backed by {@link LongAdder}s, so recording from several threads is cheap and never blocks.
+ */
+public class DurationCounter {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Records one run of the operation.
+     *
+     * @param nanos how long the run took, in nanoseconds
+     */
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * Gets the number of recorded runs.
+     *
+     * @return the number of runs
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the total duration of all recorded runs.
+     *
+     * @return the total duration in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+}
@@ -0,0 +1,649 @@
+package me.honeyberries.pingPlayer;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Stores the ping of every online player on disk, so the history survives restarts.
+ * <p>
+ * Samples are 16 byte records (timestamp, player index, ping) appended to segment files in the
+ * {@code history} folder of the data folder. Player UUIDs are stored once in {@code players.txt},
+ * and the records refer to them by their line number. A background thread writes the samples in batches,
+ * starts a new segment once the current one is too large or too old, and deletes segments that are older
+ * than the retention period.
+ * <p>
+ * The time range and the players of every segment are kept in an in-memory index, which is rebuilt
+ * from the segment files on startup. Queries use it to read only the segments that can contain matches.
+ */
+public class HistoryStore {
+
+    // The size of one record: an 8 byte timestamp, a 4 byte player index and a 4 byte ping
+    static final int RECORD_SIZE = 16;
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 512;
+    private static final int READ_BUFFER_RECORDS = 4096;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final Path playersFile;
+    private final Logger logger;
+
+    // The time each player was last sampled, to limit the sample rate
+    private final Map<UUID, Long> lastSampled = new ConcurrentHashMap<>();
+    private final BlockingQueue<Sample> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder droppedSamples = new LongAdder();
+
+    // The index of every player in players.txt, which is their line number, and the index of the next new player
+    private final Map<UUID, Integer> playerIndexes = new ConcurrentHashMap<>();
+    private int nextPlayerIndex;
+
+    // The segments by the timestamp of their first record
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private volatile long sampleIntervalMillis;
+    private volatile long segmentSizeBytes;
+    private volatile long segmentDurationMillis;
+    private volatile long retentionMillis;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Creates the history store of the running plugin, in the history folder of its data folder.
+     */
+    public HistoryStore() {
+        this(PingPlayer.getInstance().getDataFolder().toPath().resolve("history"), PingPlayer.getInstance().getLogger());
+    }
+
+    /**
+     * Creates a history store in a folder.
+     *
+     * @param directory the folder of the segment files
+     * @param logger    the logger for warnings
+     */
+    public HistoryStore(Path directory, Logger logger) {
+        this.directory = directory;
+        this.playersFile = directory.resolve("players.txt");
+        this.logger = logger;
+    }
+
+    /**
+     * Applies the sample rate, rotation and retention settings. Takes effect immediately, also while running.
+     *
+     * @param settings the settings snapshot
+     */
+    public void configure(PingSettings.Snapshot settings) {
+        sampleIntervalMillis = TimeUnit.SECONDS.toMillis(settings.history().sampleSeconds());
+        segmentSizeBytes = settings.history().segmentSizeKb() * 1024L;
+        segmentDurationMillis = TimeUnit.MINUTES.toMillis(settings.history().segmentMinutes());
+        retentionMillis = TimeUnit.DAYS.toMillis(settings.history().retentionDays());
+    }
+
+    /**
+     * Starts the writer thread, unless it is already running.
+     * The player dictionary and the segment index are loaded on the writer thread.
+     * If a stopped writer is still writing its queued samples, the store is not started,
+     * so two writers never append to the same files.
+     */
+    public synchronized void start() {
+        if (thread != null && thread.isAlive()) {
+            if (!running) {
+                logger.warning("The ping history writer is still saving queued samples. Ping history will be saved again after the next reload.");
+            }
+            return;
+        }
+
+        running = true;
+        thread = new Thread(this::run, "PingPlayer History Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread after it wrote the samples that are still queued.
+     * Waits up to 5 seconds; a writer that takes longer keeps writing in the background.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        // The thread is not interrupted, as that would close the segment channel in the middle of a write
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lastSampled.clear();
+
+        // Keep the thread while it is alive, so start() does not run a second writer next to it
+        if (thread.isAlive()) {
+            logger.warning("The ping history writer is still saving queued samples.");
+            return;
+        }
+        thread = null;
+    }
+
+    /**
+     * Queues a ping sample of a player, unless the player was sampled less than the sample interval ago.
+     * Called from the tab update task, so it never blocks: if the queue is full the sample is dropped.
+     *
+     * @param player the player
+     * @param ping   the player's ping
+     */
+    public void record(Player player, int ping) {
+        if (!running) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        UUID uuid = player.getUniqueId();
+        Long last = lastSampled.get(uuid);
+        if (last != null && now - last < sampleIntervalMillis) {
+            return;
+        }
+        lastSampled.put(uuid, now);
+
+        if (!queue.offer(new Sample(now, uuid, ping))) {
+            droppedSamples.increment();
+        }
+    }
+
+    /**
+     * Forgets when a player was last sampled. Called when the player quits.
+     *
+     * @param player the player
+     */
+    public void untrack(Player player) {
+        lastSampled.remove(player.getUniqueId());
+    }
+
+    /**
+     * Checks whether the store is recording samples.
+     *
+     * @return true if the writer thread is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the number of samples that were dropped because the write queue was full.
+     *
+     * @return the number of dropped samples
+     */
+    public long getDroppedSamples() {
+        return droppedSamples.sum();
+    }
+
+    /**
+     * Summarizes the stored ping of a player over a time range.
+     * Reads from disk, so this must be called off the main thread.
+     *
+     * @param uuid    the UUID of the player
+     * @param from    the start of the range, in epoch milliseconds
+     * @param to      the end of the range, in epoch milliseconds
+     * @param buckets the number of equal time buckets to split the range into
+     * @return the summary, or null if there are no samples in the range
+     * @throws IOException if a segment could not be read
+     */
+    public @Nullable HistoryReport query(UUID uuid, long from, long to, int buckets) throws IOException {
+        Integer playerIndex = playerIndexes.get(uuid);
+        if (playerIndex == null) {
+            return null;
+        }
+
+        ReportBuilder report = new ReportBuilder(playerIndex, from, to, buckets);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_RECORDS * RECORD_SIZE);
+        for (Segment segment : segments.headMap(to, true).values()) {
+            // Only read segments that overlap the range and contain the player
+            long length = segment.length();
+            if (length > 0 && segment.mayContain(playerIndex, from, to)) {
+                readRecords(segment.path(), length, buffer, report);
+            }
+        }
+        return report.build();
+    }
+
+    /**
+     * The writer thread: loads the dictionary and the index, then writes queued samples in batches
+     * until the store is stopped and the queue is empty.
+     */
+    private void run() {
+        try {
+            Files.createDirectories(directory);
+            loadPlayers();
+            rebuildIndex();
+            deleteExpiredSegments(null);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            logger.warning("Failed to open the ping history store. Ping history will not be saved.");
+            running = false;
+            return;
+        }
+
+        List<Sample> batch = new ArrayList<>(BATCH_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(BATCH_SIZE * RECORD_SIZE);
+        Segment segment = null;
+        FileChannel channel = null;
+
+        try {
+            while (running || !queue.isEmpty()) {
+                Sample first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+
+                try {
+                    // Start a new segment if the current one is full or too old
+                    if (segment == null || segment.length() >= segmentSizeBytes
+                            || first.timestamp() - segment.firstTimestamp() >= segmentDurationMillis) {
+                        if (channel != null) {
+                            channel.close();
+                        }
+                        segment = createSegment(first.timestamp());
+                        channel = FileChannel.open(segment.path(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                        deleteExpiredSegments(segment);
+                    }
+
+                    // Encode the batch and append it with a single write
+                    buffer.clear();
+                    for (Sample sample : batch) {
+                        buffer.putLong(sample.timestamp());
+                        buffer.putInt(playerIndex(sample.uuid()));
+                        buffer.putInt(sample.ping());
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+
+                    // Only publish the records to queries once they are written
+                    for (Sample sample : batch) {
+                        segment.add(sample.timestamp(), playerIndexes.get(sample.uuid()));
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    logger.warning("Failed to write " + batch.size() + " ping history samples.");
+                    segment = discardPartialWrite(segment, channel);
+                    if (segment == null) {
+                        channel = null;
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Stop taking samples, so they are not queued for a writer that is gone
+            e.printStackTrace();
+            logger.warning("The ping history writer stopped unexpectedly. Ping history will not be saved.");
+            running = false;
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuts a failed write off the end of a segment, so the next batch starts at a record boundary.
+     * If the segment cannot be truncated, its channel is closed and the next batch starts a new segment.
+     * Only called on the writer thread.
+     *
+     * @param segment the segment that was written to, or null if none was open
+     * @param channel the channel of the segment, or null if none was open
+     * @return the segment to keep writing to, or null to start a new one
+     */
+    private @Nullable Segment discardPartialWrite(@Nullable Segment segment, @Nullable FileChannel channel) {
+        if (segment == null || channel == null) {
+            return null;
+        }
+
+        try {
+            channel.truncate(segment.length());
+            return segment;
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                channel.close();
+            } catch (IOException closeFailure) {
+                closeFailure.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Gets the index of a player in the dictionary, appending the player if it is new.
+     * Only called on the writer thread.
+     *
+     * @param uuid the UUID of the player
+     * @return the index of the player
+     * @throws IOException if the dictionary could not be written
+     */
+    private int playerIndex(UUID uuid) throws IOException {
+        Integer index = playerIndexes.get(uuid);
+        if (index != null) {
+            return index;
+        }
+
+        Files.writeString(playersFile, uuid + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        int newIndex = nextPlayerIndex++;
+        playerIndexes.put(uuid, newIndex);
+        return newIndex;
+    }
+
+    /**
+     * Loads the player dictionary from players.txt.
+     * Malformed lines, like one cut off by a crash, are skipped but keep their index,
+     * so the players after them still match the records that refer to them.
+     *
+     * @throws IOException if the dictionary could not be read or repaired
+     */
+    private void loadPlayers() throws IOException {
+        playerIndexes.clear();
+        nextPlayerIndex = 0;
+        if (!Files.exists(playersFile)) {
+            return;
+        }
+
+        String contents = Files.readString(playersFile, StandardCharsets.UTF_8);
+        List<String> lines = contents.lines().toList();
+        for (int i = 0; i < lines.size(); i++) {
+            try {
+                playerIndexes.put(UUID.fromString(lines.get(i).trim()), i);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping malformed line " + (i + 1) + " in " + playersFile.getFileName() + ": " + lines.get(i));
+            }
+        }
+        nextPlayerIndex = lines.size();
+
+        // End a line that was cut off, so the next player starts on a line of their own
+        if (!contents.isEmpty() && !contents.endsWith("\n")) {
+            Files.writeString(playersFile, System.lineSeparator(), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Rebuilds the segment index by scanning every segment file.
+     * A record that was only partially written before a crash is ignored.
+     *
+     * @throws IOException if a segment could not be read
+     */
+    private void rebuildIndex() throws IOException {
+        segments.clear();
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).toList();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_RECORDS * RECORD_SIZE);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long firstTimestamp;
+            try {
+                firstTimestamp = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                logger.warning("Ignoring unknown file in the ping history folder: " + name);
+                continue;
+            }
+
+            Segment segment = new Segment(file, firstTimestamp);
+            long length = Files.size(file);
+            readRecords(file, length - length % RECORD_SIZE, buffer, (timestamp, playerIndex, ping) -> segment.add(timestamp, playerIndex));
+            segments.put(firstTimestamp, segment);
+        }
+    }
+
+    /**
+     * Creates a new, empty segment and adds it to the index.
+     *
+     * @param firstTimestamp the timestamp of the first record of the segment
+     * @return the new segment
+     */
+    private Segment createSegment(long firstTimestamp) {
+        // Never append to a segment of an earlier run, whose index might be out of date
+        long key = firstTimestamp;
+        while (segments.containsKey(key) || Files.exists(directory.resolve(SEGMENT_PREFIX + key + SEGMENT_SUFFIX))) {
+            key++;
+        }
+
+        Segment segment = new Segment(directory.resolve(SEGMENT_PREFIX + key + SEGMENT_SUFFIX), key);
+        segments.put(key, segment);
+        return segment;
+    }
+
+    /**
+     * Deletes the segments whose newest record is older than the retention period.
+     *
+     * @param current the segment that is being written, which is never deleted, or null
+     */
+    private void deleteExpiredSegments(@Nullable Segment current) {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (Segment segment : segments.values()) {
+            if (segment == current || segment.lastTimestamp() >= cutoff) {
+                continue;
+            }
+
+            try {
+                Files.deleteIfExists(segment.path());
+                segments.remove(segment.firstTimestamp());
+            } catch (IOException e) {
+                e.printStackTrace();
+                logger.warning("Failed to delete expired ping history segment " + segment.path().getFileName());
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a segment file in large sequential chunks.
+     *
+     * @param path     the segment file
+     * @param length   the number of bytes to read, a multiple of the record size
+     * @param buffer   the buffer to read into, with a capacity that is a multiple of the record size
+     * @param consumer called for every record
+     * @throws IOException if the segment could not be read
+     */
+    private static void readRecords(Path path, long length, ByteBuffer buffer, RecordConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < length) {
+                // Fill the buffer completely, so it only holds whole records
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - position));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        return;
+                    }
+                }
+                position += buffer.limit();
+                buffer.flip();
+
+                while (buffer.hasRemaining()) {
+                    consumer.accept(buffer.getLong(), buffer.getInt(), buffer.getInt());
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the fields of a stored record.
+     */
+    @FunctionalInterface
+    private interface RecordConsumer {
+        void accept(long timestamp, int playerIndex, int ping);
+    }
+
+    /**
+     * Collects the records of one player in a time range into a {@link HistoryReport}.
+     */
+    private static final class ReportBuilder implements RecordConsumer {
+
+        private final int playerIndex;
+        private final long from;
+        private final long to;
+        private final long bucketMillis;
+        private final int[] bucketSamples;
+        private final long[] bucketSums;
+        private final int[] bucketMax;
+        private int samples;
+        private int min = Integer.MAX_VALUE;
+        private int max;
+        private long sum;
+
+        ReportBuilder(int playerIndex, long from, long to, int buckets) {
+            this.playerIndex = playerIndex;
+            this.from = from;
+            this.to = to;
+            this.bucketMillis = Math.max(1, (to - from + buckets - 1) / buckets);
+            this.bucketSamples = new int[buckets];
+            this.bucketSums = new long[buckets];
+            this.bucketMax = new int[buckets];
+        }
+
+        @Override
+        public void accept(long timestamp, int index, int ping) {
+            if (index != playerIndex || timestamp < from || timestamp > to) {
+                return;
+            }
+
+            int bucket = (int) Math.min(bucketSamples.length - 1, (timestamp - from) / bucketMillis);
+            bucketSamples[bucket]++;
+            bucketSums[bucket] += ping;
+            bucketMax[bucket] = Math.max(bucketMax[bucket], ping);
+            samples++;
+            sum += ping;
+            min = Math.min(min, ping);
+            max = Math.max(max, ping);
+        }
+
+        @Nullable HistoryReport build() {
+            if (samples == 0) {
+                return null;
+            }
+
+            List<HistoryBucket> buckets = new ArrayList<>(bucketSamples.length);
+            for (int i = 0; i < bucketSamples.length; i++) {
+                double average = bucketSamples[i] == 0 ? 0 : (double) bucketSums[i] / bucketSamples[i];
+                buckets.add(new HistoryBucket(from + i * bucketMillis, bucketSamples[i], average, bucketMax[i]));
+            }
+            return new HistoryReport(samples, min, max, (double) sum / samples, buckets);
+        }
+    }
+
+    /**
+     * A segment file and its index entry: the time range of its records and the players that appear in it.
+     * Written by the writer thread and read by queries, so all access is synchronized.
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final long firstTimestamp;
+        private final BitSet players = new BitSet();
+        private long lastTimestamp = Long.MIN_VALUE;
+        private long records;
+
+        Segment(Path path, long firstTimestamp) {
+            this.path = path;
+            this.firstTimestamp = firstTimestamp;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        long firstTimestamp() {
+            return firstTimestamp;
+        }
+
+        synchronized long lastTimestamp() {
+            return lastTimestamp;
+        }
+
+        /**
+         * Gets the number of bytes of complete, published records.
+         */
+        synchronized long length() {
+            return records * RECORD_SIZE;
+        }
+
+        synchronized void add(long timestamp, int playerIndex) {
+            players.set(playerIndex);
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+            records++;
+        }
+
+        synchronized boolean mayContain(int playerIndex, long from, long to) {
+            return players.get(playerIndex) && lastTimestamp >= from && firstTimestamp <= to;
+        }
+    }
+
+    /**
+     * A queued ping sample.
+     *
+     * @param timestamp the time of the sample, in epoch milliseconds
+     * @param uuid      the UUID of the player
+     * @param ping      the ping in milliseconds
+     */
+    private record Sample(long timestamp, UUID uuid, int ping) {
+    }
+
+    /**
+     * The stored ping of a player over a time range.
+     *
+     * @param samples the number of samples in the range
+     * @param min     the lowest ping
+     * @param max     the highest ping
+     * @param average the average ping
+     * @param buckets the samples split into equal time buckets, oldest first
+     */
+    public record HistoryReport(int samples, int min, int max, double average, List<HistoryBucket> buckets) {
+    }
+
+    /**
+     * The samples of one time bucket of a {@link HistoryReport}.
+     *
+     * @param start   the start of the bucket, in epoch milliseconds
+     * @param samples the number of samples in the bucket
+     * @param average the average ping, or 0 if there are no samples
+     * @param max     the highest ping, or 0 if there are no samples
+     */
+    public record HistoryBucket(long start, int samples, double average, int max) {
+    }
+}
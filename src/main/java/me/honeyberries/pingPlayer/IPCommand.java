@@ -9,17 +9,23 @@ import org.bukkit.command.*;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Locale;
 
 /**
  * Command handler for the /ip command.
- * This command reveals the IP address of an online player.
+ * This command reveals the IP address of an online player, and finds the players that share an address or subnet.
  * Also handles the /ip help command to display usage information.
  */
 public class IPCommand implements CommandExecutor, TabExecutor {
 
+    // The subcommands offered in tab completion
+    private static final List<String> SUBCOMMANDS = List.of("shared", "lookup", "dupes", "help");
+
+    // The most addresses listed by /ip lookup and /ip dupes
+    private static final int MAX_ADDRESSES = 20;
+
     private final PingPlayer plugin = PingPlayer.getInstance();
 
     /**
@@ -33,6 +39,25 @@ public class IPCommand implements CommandExecutor, TabExecutor {
      */
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        long start = System.nanoTime();
+        long allocated = plugin.getProfiler().allocatedBytes();
+        try {
+            return execute(sender, command, label, args);
+        } finally {
+            plugin.getProfiler().record(Profiler.Section.COMMAND_IP, start, allocated, 1);
+        }
+    }
+
+    /**
+     * Runs the /ip command. Called by {@link #onCommand}, which records its cost in the profiler.
+     *
+     * @param sender  the sender of the command
+     * @param command the command being executed
+     * @param label   the alias used for the command
+     * @param args    the command arguments
+     * @return true if the command was successfully executed, false otherwise
+     */
+    private boolean execute(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
         // Check for permission
         if (!sender.hasPermission("pingplayer.ip")) {
             sender.sendMessage(Component.text("You don't have permission to view player IPs.", NamedTextColor.RED));
@@ -45,9 +70,24 @@ public class IPCommand implements CommandExecutor, TabExecutor {
             return true;
         }
 
+        // Answer the subcommands from the address index
+        String subcommand = args[0].toLowerCase(Locale.ROOT);
+        if (args.length == 2 && subcommand.equals("shared")) {
+            handleSharedCommand(sender, args[1]);
+            return true;
+        }
+        if (args.length == 2 && subcommand.equals("lookup")) {
+            handleLookupCommand(sender, args[1]);
+            return true;
+        }
+        if (args.length == 1 && subcommand.equals("dupes")) {
+            handleDupesCommand(sender);
+            return true;
+        }
+
         // If the number of arguments is not 1, show usage message
         if (args.length != 1) {
-            sender.sendMessage(Component.text("Usage: /ip <player> or /ip help", NamedTextColor.RED));
+            sender.sendMessage(Component.text("Usage: /ip <player>, /ip shared <player>, /ip lookup <address|cidr>, /ip dupes or /ip help", NamedTextColor.RED));
             return true;
         }
 
@@ -68,14 +108,121 @@ public class IPCommand implements CommandExecutor, TabExecutor {
         String ipAddress = target.getAddress().getAddress().getHostAddress();
 
         Component message = Component.text(target.getName() + "'s IP address is: ", NamedTextColor.GOLD)
-                .append(Component.text(ipAddress, NamedTextColor.AQUA)
-                        .hoverEvent(HoverEvent.showText(Component.text("Click to copy IP", NamedTextColor.GREEN)))
-                        .clickEvent(ClickEvent.copyToClipboard(ipAddress)));
+                .append(formatAddress(ipAddress));
 
         sender.sendMessage(message);
+        plugin.getAuditLog().record(sender, AuditLog.Action.IP, target.getName(), ipAddress);
         return true;
     }
 
+    /**
+     * Handles the /ip shared command, which lists the other players online from the same address as a player.
+     *
+     * @param sender     the sender of the command
+     * @param playerName the name of the player
+     */
+    private void handleSharedCommand(CommandSender sender, String playerName) {
+        Player target = Bukkit.getPlayer(playerName);
+        if (target == null || !target.isOnline()) {
+            sender.sendMessage(Component.text("Player not found or not online.", NamedTextColor.RED));
+            return;
+        }
+
+        AddressIndex.Match match = plugin.getAddressIndex().sharing(target.getUniqueId());
+        if (match == null) {
+            sender.sendMessage(Component.text("Could not retrieve IP address for " + target.getName(), NamedTextColor.RED));
+            return;
+        }
+
+        plugin.getAuditLog().record(sender, AuditLog.Action.IP_SHARED, target.getName(), match.address());
+        List<String> others = new ArrayList<>(match.players());
+        others.remove(target.getName());
+        if (others.isEmpty()) {
+            sender.sendMessage(Component.text("No other players are online from " + target.getName() + "'s IP address ", NamedTextColor.GOLD)
+                    .append(formatAddress(match.address()))
+                    .append(Component.text(".", NamedTextColor.GOLD)));
+            return;
+        }
+
+        sender.sendMessage(Component.text("Players sharing " + target.getName() + "'s IP address ", NamedTextColor.GOLD)
+                .append(formatAddress(match.address()))
+                .append(Component.text(": ", NamedTextColor.GOLD))
+                .append(Component.text(String.join(", ", others), NamedTextColor.YELLOW)));
+    }
+
+    /**
+     * Handles the /ip lookup command, which lists the players online from an address or CIDR range.
+     *
+     * @param sender the sender of the command
+     * @param range  the address or CIDR range, like 203.0.113.0/24
+     */
+    private void handleLookupCommand(CommandSender sender, String range) {
+        List<AddressIndex.Match> matches;
+        try {
+            matches = plugin.getAddressIndex().lookup(AddressIndex.parseRange(range), MAX_ADDRESSES + 1);
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(Component.text(e.getMessage(), NamedTextColor.RED));
+            return;
+        }
+        plugin.getAuditLog().record(sender, AuditLog.Action.IP_LOOKUP, range, String.valueOf(matches.size()));
+
+        if (matches.isEmpty()) {
+            sender.sendMessage(Component.text("No players are online from " + range + ".", NamedTextColor.GOLD));
+            return;
+        }
+
+        sender.sendMessage(Component.text("----- Players from " + range + " -----", NamedTextColor.GOLD));
+        sendMatches(sender, matches);
+    }
+
+    /**
+     * Handles the /ip dupes command, which lists every address that more than one player is online from.
+     *
+     * @param sender the sender of the command
+     */
+    private void handleDupesCommand(CommandSender sender) {
+        AddressIndex addressIndex = plugin.getAddressIndex();
+        List<AddressIndex.Match> matches = addressIndex.duplicates(MAX_ADDRESSES + 1);
+        plugin.getAuditLog().record(sender, AuditLog.Action.IP_DUPES, null, String.valueOf(addressIndex.getSharedCount()));
+        if (matches.isEmpty()) {
+            sender.sendMessage(Component.text("No IP address is shared by more than one online player.", NamedTextColor.GOLD));
+            return;
+        }
+
+        sender.sendMessage(Component.text("----- Shared IP Addresses (" + addressIndex.getSharedCount() + ") -----", NamedTextColor.GOLD));
+        sendMatches(sender, matches);
+    }
+
+    /**
+     * Sends one line per address with the players online from it.
+     * At most {@link #MAX_ADDRESSES} addresses are shown; the list is expected to hold one more if there are more.
+     *
+     * @param sender  the command sender
+     * @param matches the addresses and their players
+     */
+    private void sendMatches(CommandSender sender, List<AddressIndex.Match> matches) {
+        for (AddressIndex.Match match : matches.subList(0, Math.min(matches.size(), MAX_ADDRESSES))) {
+            sender.sendMessage(formatAddress(match.address())
+                    .append(Component.text(": ", NamedTextColor.GOLD))
+                    .append(Component.text(String.join(", ", match.players()), NamedTextColor.YELLOW)));
+        }
+        if (matches.size() > MAX_ADDRESSES) {
+            sender.sendMessage(Component.text("Only the first " + MAX_ADDRESSES + " addresses are shown. Use a narrower range to see more.", NamedTextColor.GRAY));
+        }
+    }
+
+    /**
+     * Formats an IP address that can be copied by clicking on it.
+     *
+     * @param ipAddress the IP address
+     * @return the address component
+     */
+    private Component formatAddress(String ipAddress) {
+        return Component.text(ipAddress, NamedTextColor.AQUA)
+                .hoverEvent(HoverEvent.showText(Component.text("Click to copy IP", NamedTextColor.GREEN)))
+                .clickEvent(ClickEvent.copyToClipboard(ipAddress));
+    }
+
     /**
      * Sends a help message to the command sender, explaining how to use the /ip command.
      *
@@ -85,13 +232,20 @@ public class IPCommand implements CommandExecutor, TabExecutor {
         sender.sendMessage(Component.text("----- IP Command Help -----", NamedTextColor.GOLD));
         sender.sendMessage(Component.text("/ip <player>", NamedTextColor.AQUA)
                 .append(Component.text(" - Displays the IP address of the specified player.", NamedTextColor.GOLD)));
+        sender.sendMessage(Component.text("/ip shared <player>", NamedTextColor.AQUA)
+                .append(Component.text(" - Lists the other players online from the same IP address.", NamedTextColor.GOLD)));
+        sender.sendMessage(Component.text("/ip lookup <address|cidr>", NamedTextColor.AQUA)
+                .append(Component.text(" - Lists the players online from an IP address or range, like 203.0.113.0/24.", NamedTextColor.GOLD)));
+        sender.sendMessage(Component.text("/ip dupes", NamedTextColor.AQUA)
+                .append(Component.text(" - Lists the IP addresses shared by more than one online player.", NamedTextColor.GOLD)));
         sender.sendMessage(Component.text("/ip help", NamedTextColor.AQUA)
                 .append(Component.text(" - Displays this help message.", NamedTextColor.GOLD)));
     }
 
     /**
      * Handles tab completion for the /ip command.
-     * Provides player names and the "help" argument as suggestions based on the input.
+     * Provides player names and the subcommands as suggestions based on the input.
+     * Player names are looked up in the shared {@link PlayerNameIndex}.
      *
      * @param sender  the sender of the command
      * @param command the command that was executed
@@ -102,13 +256,18 @@ public class IPCommand implements CommandExecutor, TabExecutor {
     @Override
     public @Nullable List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
         if (args.length == 1) {
-            String partialName = args[0].toLowerCase();
-            return Stream.concat(
-                            Bukkit.getOnlinePlayers().stream().map(Player::getName),
-                            Stream.of("help")
-                    )
-                    .filter(option -> option.toLowerCase().startsWith(partialName))
-                    .collect(Collectors.toList());
+            String partialName = args[0].toLowerCase(Locale.ROOT);
+            List<String> completions = plugin.getPlayerNameIndex().complete(partialName, PingSettings.getInstance().getCompletionLimit());
+            for (String subcommand : SUBCOMMANDS) {
+                if (subcommand.startsWith(partialName)) {
+                    completions.add(subcommand);
+                }
+            }
+            return completions;
+        }
+
+        if (args.length == 2 && args[0].equalsIgnoreCase("shared")) {
+            return plugin.getPlayerNameIndex().complete(args[1].toLowerCase(Locale.ROOT), PingSettings.getInstance().getCompletionLimit());
         }
 
         return List.of();
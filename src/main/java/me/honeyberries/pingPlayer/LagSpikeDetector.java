@@ -0,0 +1,440 @@
+package me.honeyberries.pingPlayer;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Detects lag spikes and sustained high latency as the tab update task samples the ping of every player,
+ * and reports them to the players with {@code pingplayer.alerts} and the console.
+ * <p>
+ * Every sample costs constant time: each player keeps an exponentially weighted baseline of their ping and two flags.
+ * A spike starts when the ping jumps the configured delta above the baseline, and ends once it fell back
+ * to half that delta. High latency is reported once the ping stayed at or above its threshold for the configured time.
+ * Each player reports at most one event of each kind per alert window.
+ * After a join, the reported ping climbs towards the real round trip over several keep-alives, so for the first
+ * baseline period of a player their baseline simply follows the ping and no spikes are reported.
+ * <p>
+ * The events are collected and sent as one coalesced alert per window, like "12 players spiked by more than 150 ms
+ * in the last 5 s". A player is named again only after their cooldown; until then they are counted in "and N more".
+ * At most the configured number of alerts is sent per minute; events that could not be sent are carried over
+ * into the next alert.
+ * When a large share of the online players spike in the same window, a server-wide alert is sent instead,
+ * as that usually means a network problem on the server's side rather than with the players.
+ */
+public class LagSpikeDetector {
+
+    // The number of players named in an alert line
+    private static final int NAMED_PLAYERS = 5;
+
+    private final LongSupplier clock;
+    private final PermissionCache permissions;
+    private final Logger logger;
+
+    // The detector state of every online player, only changed by the thread that samples the player
+    private final Map<UUID, State> states = new ConcurrentHashMap<>();
+
+    // The events of the current window, written by the sampling threads and drained by flush
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+
+    // Counters for the metrics endpoint
+    private final LongAdder spikes = new LongAdder();
+    private final LongAdder sustained = new LongAdder();
+    private final LongAdder alertsSent = new LongAdder();
+    private final LongAdder alertsDelayed = new LongAdder();
+
+    // The events that were not sent yet, the times of the recent alerts and when each player was last named,
+    // only used by flush
+    private final Pending pending = new Pending();
+    private final Deque<Long> recentAlerts = new ArrayDeque<>();
+    private final Map<UUID, Long> lastNamed = new HashMap<>();
+
+    private volatile PingSettings.Snapshot settings;
+    private Task timer;
+
+    /**
+     * Creates the lag spike detector of the running plugin.
+     */
+    public LagSpikeDetector() {
+        this(System::nanoTime, PingPlayer.getInstance().getPermissionCache(), PingPlayer.getInstance().getLogger());
+    }
+
+    /**
+     * Creates a lag spike detector with its own clock, so it can also run on simulated time, like in the load simulator.
+     *
+     * @param clock       the clock, in nanoseconds like {@link System#nanoTime()}
+     * @param permissions the permission cache that decides who receives alerts
+     * @param logger      the logger that also receives every alert
+     */
+    public LagSpikeDetector(LongSupplier clock, PermissionCache permissions, Logger logger) {
+        this.clock = clock;
+        this.permissions = permissions;
+        this.logger = logger;
+    }
+
+    /**
+     * Applies the detection and alert settings. Takes effect with the next sample.
+     *
+     * @param settings the settings snapshot
+     */
+    public void configure(PingSettings.Snapshot settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Starts sending alerts once per alert window. Any running timer is cancelled first,
+     * so this can be called again after a reload.
+     */
+    public void start() {
+        stop();
+        long period = settings.alerts().windowSeconds() * 20L;
+        timer = Scheduler.runTaskTimer(this::flush, period, period);
+    }
+
+    /**
+     * Stops sending alerts and forgets the events that were not sent yet.
+     */
+    public void stop() {
+        if (timer != null && !timer.isCancelled()) {
+            timer.cancel();
+        }
+        timer = null;
+        events.clear();
+        pending.clear();
+    }
+
+    /**
+     * Checks a ping sample of a player for a spike or sustained high latency.
+     * Called by the tab update task for every sample, on the thread that owns the player.
+     * The server reports a ping of 0 until the first keep-alive after a join, so samples of 0 or less are ignored,
+     * and the baseline is only set by the first real sample. Spikes are not checked during the warm-up that follows.
+     *
+     * @param player the player
+     * @param ping   the ping sample in milliseconds
+     */
+    public void record(Player player, int ping) {
+        PingSettings.Snapshot config = settings;
+        if (config == null || !config.alerts().enabled() || ping <= 0) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        State state = states.get(player.getUniqueId());
+        if (state == null) {
+            // The first sample only sets the baseline and starts the warm-up
+            states.put(player.getUniqueId(), new State(ping, now, now + TimeUnit.SECONDS.toNanos(config.alerts().baselineSeconds())));
+            return;
+        }
+        boolean warmingUp = now - state.warmUntil < 0;
+
+        long window = now / TimeUnit.SECONDS.toNanos(config.alerts().windowSeconds());
+        int delta = config.alerts().spikeDelta();
+
+        // A spike starts when the ping jumps above the baseline and ends once it is back within half the delta
+        double above = ping - state.baseline;
+        if (!state.spiking && !warmingUp && above >= delta) {
+            state.spiking = true;
+            spikes.increment();
+            if (state.spikeWindow != window) {
+                state.spikeWindow = window;
+                events.offer(new Event(player.getUniqueId(), player.getName(), false, ping, (int) Math.round(state.baseline)));
+            }
+        } else if (state.spiking && above < delta / 2.0) {
+            state.spiking = false;
+        }
+
+        // High latency is reported once per episode, after it lasted long enough
+        if (ping >= config.alerts().sustainedPing()) {
+            if (!state.high) {
+                state.high = true;
+                state.highSince = now;
+            } else if (!state.highReported && now - state.highSince >= TimeUnit.SECONDS.toNanos(config.alerts().sustainedSeconds())) {
+                state.highReported = true;
+                sustained.increment();
+                events.offer(new Event(player.getUniqueId(), player.getName(), true, ping, (int) Math.round(state.baseline)));
+            }
+        } else {
+            state.high = false;
+            state.highReported = false;
+        }
+
+        // Move the baseline towards the sample, with a weight that depends on the time since the last sample;
+        // while warming up, it follows the sample, as the reported ping is still climbing
+        double elapsedSeconds = (now - state.lastSample) / 1_000_000_000.0;
+        double alpha = warmingUp ? 1 : 1 - Math.exp(-elapsedSeconds / config.alerts().baselineSeconds());
+        state.baseline += alpha * (ping - state.baseline);
+        state.lastSample = now;
+    }
+
+    /**
+     * Forgets a player. Called when the player quits.
+     *
+     * @param player the player
+     */
+    public void untrack(Player player) {
+        states.remove(player.getUniqueId());
+    }
+
+    /**
+     * Sends the events of the last window as one alert, unless the alert limit was reached,
+     * in which case they are kept for the next window. Called once per alert window.
+     */
+    public void flush() {
+        PingSettings.Snapshot config = settings;
+        if (config == null || !config.alerts().enabled()) {
+            events.clear();
+            pending.clear();
+            return;
+        }
+
+        long now = clock.getAsLong();
+        long cooldown = TimeUnit.SECONDS.toNanos(config.alerts().playerCooldownSeconds());
+        pending.windows++;
+
+        // Collect this window's events; players that were named too recently are only counted
+        int spiked = 0;
+        Event event;
+        while ((event = events.poll()) != null) {
+            if (!event.sustained()) {
+                spiked++;
+            }
+            Long named = lastNamed.get(event.uuid());
+            if (named != null && now - named < cooldown) {
+                (event.sustained() ? pending.sustainedUnnamed : pending.spikedUnnamed).add(event.uuid());
+                continue;
+            }
+            (event.sustained() ? pending.sustained : pending.spiked).putIfAbsent(event.uuid(), event);
+            (event.sustained() ? pending.sustainedUnnamed : pending.spikedUnnamed).remove(event.uuid());
+        }
+
+        // Many players spiking in the same window points to the server's own network
+        int online = Bukkit.getOnlinePlayers().size();
+        int serverWideThreshold = Math.max(config.alerts().serverWideMinPlayers(),
+                (int) Math.ceil(online * config.alerts().serverWidePercent() / 100.0));
+        if (spiked >= serverWideThreshold && spiked > pending.serverWideSpiked) {
+            pending.serverWideSpiked = spiked;
+            pending.serverWideOnline = online;
+        }
+
+        if (pending.isEmpty()) {
+            pending.clear();
+            return;
+        }
+
+        // Keep the events for the next window if the alert limit is reached
+        long minute = TimeUnit.MINUTES.toNanos(1);
+        while (!recentAlerts.isEmpty() && now - recentAlerts.peekFirst() >= minute) {
+            recentAlerts.pollFirst();
+        }
+        if (recentAlerts.size() >= config.alerts().maxPerMinute()) {
+            alertsDelayed.increment();
+            return;
+        }
+        recentAlerts.addLast(now);
+
+        send(render(config));
+        pending.spiked.keySet().forEach(uuid -> lastNamed.put(uuid, now));
+        pending.sustained.keySet().forEach(uuid -> lastNamed.put(uuid, now));
+        lastNamed.values().removeIf(named -> now - named >= cooldown);
+        pending.clear();
+    }
+
+    /**
+     * Gets the number of spikes detected, including the ones that were not named in an alert.
+     *
+     * @return the number of spikes
+     */
+    public long getSpikes() {
+        return spikes.sum();
+    }
+
+    /**
+     * Gets the number of times a player had a high ping for longer than the configured time.
+     *
+     * @return the number of sustained high latency events
+     */
+    public long getSustained() {
+        return sustained.sum();
+    }
+
+    /**
+     * Gets the number of alerts sent.
+     *
+     * @return the number of alerts
+     */
+    public long getAlertsSent() {
+        return alertsSent.sum();
+    }
+
+    /**
+     * Gets the number of times an alert was held back because the alert limit was reached.
+     *
+     * @return the number of delayed alerts
+     */
+    public long getAlertsDelayed() {
+        return alertsDelayed.sum();
+    }
+
+    /**
+     * Renders the pending events as one alert.
+     *
+     * @param config the settings snapshot
+     * @return the alert lines
+     */
+    private List<Component> render(PingSettings.Snapshot config) {
+        List<Component> lines = new ArrayList<>(3);
+        int seconds = pending.windows * config.alerts().windowSeconds();
+
+        if (pending.serverWideSpiked > 0) {
+            int percent = pending.serverWideOnline == 0 ? 100 : Math.round(100f * pending.serverWideSpiked / pending.serverWideOnline);
+            lines.add(Component.text("Server-wide lag: ", NamedTextColor.DARK_RED)
+                    .append(Component.text(pending.serverWideSpiked + " of " + pending.serverWideOnline + " players (" + percent
+                            + "%) spiked by more than " + config.alerts().spikeDelta() + " ms at once. Check the server's network.",
+                            NamedTextColor.RED)));
+        }
+        if (!pending.spiked.isEmpty()) {
+            lines.add(Component.text("Lag spike: ", NamedTextColor.GOLD)
+                    .append(Component.text(players(pending.spiked.size() + pending.spikedUnnamed.size()) + " spiked by more than "
+                            + config.alerts().spikeDelta() + " ms in the last " + seconds + " s: ", NamedTextColor.YELLOW))
+                    .append(Component.text(names(pending.spiked, pending.spikedUnnamed.size()), NamedTextColor.AQUA)));
+        }
+        if (!pending.sustained.isEmpty()) {
+            lines.add(Component.text("High latency: ", NamedTextColor.GOLD)
+                    .append(Component.text(players(pending.sustained.size() + pending.sustainedUnnamed.size()) + " above "
+                            + config.alerts().sustainedPing() + " ms for " + config.alerts().sustainedSeconds() + " s: ", NamedTextColor.YELLOW))
+                    .append(Component.text(names(pending.sustained, pending.sustainedUnnamed.size()), NamedTextColor.AQUA)));
+        }
+        return lines;
+    }
+
+    /**
+     * Sends an alert to the console and every online player with the permission to receive alerts.
+     *
+     * @param lines the alert lines
+     */
+    private void send(List<Component> lines) {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (permissions.has(player, PermissionCache.Permission.ALERTS)) {
+                lines.forEach(player::sendMessage);
+            }
+        }
+        for (Component line : lines) {
+            logger.warning(PlainTextComponentSerializer.plainText().serialize(line));
+        }
+        alertsSent.increment();
+    }
+
+    private static String players(int count) {
+        return count == 1 ? "1 player" : count + " players";
+    }
+
+    /**
+     * Lists the first players of an alert line with the ping of their event.
+     * Players beyond the first few and players still in their cooldown are counted in "and N more".
+     *
+     * @param events  the events, in the order they were detected
+     * @param unnamed the number of other players with an event who are still in their cooldown
+     * @return the names, like "Steve (412 ms), Alex (390 ms) and 3 more"
+     */
+    private static String names(Map<UUID, Event> events, int unnamed) {
+        StringBuilder names = new StringBuilder();
+        int listed = 0;
+        for (Event event : events.values()) {
+            if (listed == NAMED_PLAYERS) {
+                break;
+            }
+            if (listed > 0) {
+                names.append(", ");
+            }
+            names.append(event.name()).append(" (").append(event.ping()).append(" ms");
+            if (!event.sustained()) {
+                names.append(", usually ").append(event.baseline());
+            }
+            names.append(')');
+            listed++;
+        }
+        int more = events.size() - listed + unnamed;
+        if (more > 0) {
+            names.append(" and ").append(more).append(" more");
+        }
+        return names.toString();
+    }
+
+    /**
+     * The detector state of one player.
+     */
+    private static final class State {
+        private double baseline;
+        private long lastSample;
+        private long spikeWindow = Long.MIN_VALUE;
+        private boolean spiking;
+        private boolean high;
+        private boolean highReported;
+        private long highSince;
+        private final long warmUntil;
+
+        private State(int ping, long now, long warmUntil) {
+            this.baseline = ping;
+            this.lastSample = now;
+            this.warmUntil = warmUntil;
+        }
+    }
+
+    /**
+     * A detected spike or sustained high latency.
+     *
+     * @param uuid      the UUID of the player
+     * @param name      the name of the player
+     * @param sustained true for sustained high latency, false for a spike
+     * @param ping      the ping when the event was detected
+     * @param baseline  the player's baseline when the event was detected
+     */
+    private record Event(UUID uuid, String name, boolean sustained, int ping, int baseline) {
+    }
+
+    /**
+     * The events collected for the next alert, over one or more windows.
+     */
+    private static final class Pending {
+        private final Map<UUID, Event> spiked = new LinkedHashMap<>();
+        private final Map<UUID, Event> sustained = new LinkedHashMap<>();
+        // Players with an event who are still in their cooldown, only counted in the alert
+        private final Set<UUID> spikedUnnamed = new HashSet<>();
+        private final Set<UUID> sustainedUnnamed = new HashSet<>();
+        private int serverWideSpiked;
+        private int serverWideOnline;
+        private int windows;
+
+        private boolean isEmpty() {
+            return spiked.isEmpty() && sustained.isEmpty() && serverWideSpiked == 0;
+        }
+
+        private void clear() {
+            spiked.clear();
+            sustained.clear();
+            spikedUnnamed.clear();
+            sustainedUnnamed.clear();
+            serverWideSpiked = 0;
+            serverWideOnline = 0;
+            windows = 0;
+        }
+    }
+}
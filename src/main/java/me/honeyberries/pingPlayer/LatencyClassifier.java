@@ -0,0 +1,257 @@
+package me.honeyberries.pingPlayer;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.jetbrains.annotations.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sorts ping values into latency tiers, each with a label and a color.
+ * A classifier is compiled from the configured tiers and its tiers never change:
+ * small pings are classified by a direct lookup table, larger ones by a scan of the tier bounds,
+ * so classifying never allocates. It also holds the shared " [ping ms]" suffix components shown on the tab list.
+ * The suffix of a ping shown in a neighbouring tier is built on first use and published atomically,
+ * so a classifier can be shared between threads.
+ * When the settings are reloaded, a new classifier is compiled and swapped in as a whole.
+ */
+public final class LatencyClassifier {
+
+    // The tiers used when none are configured
+    private static final String[] DEFAULT_LABELS = {"excellent", "good", "ok", "bad", "terrible"};
+    private static final NamedTextColor[] DEFAULT_COLORS = {
+            NamedTextColor.GREEN,       // Excellent
+            NamedTextColor.YELLOW,      // Good
+            NamedTextColor.GOLD,        // Ok
+            NamedTextColor.RED,         // Bad
+            NamedTextColor.DARK_RED     // Terrible
+    };
+
+    // Pings below this value are always in the lookup table
+    private static final int MIN_LOOKUP_SIZE = 1000;
+
+    // Upper bound for the lookup table size, in case of very large thresholds
+    private static final int MAX_LOOKUP_SIZE = 10000;
+
+    // Upper bound for the number of tiers, so tier indexes fit in the lookup table
+    private static final int MAX_TIERS = 64;
+
+    private final List<Tier> tiers;
+    private final int[] bounds;
+    private final byte[] lookup;
+    private final AtomicReferenceArray<Component> suffixes;
+    private final Component[] overflow;
+
+    private LatencyClassifier(List<Tier> tiers) {
+        this.tiers = List.copyOf(tiers);
+
+        // The bounds of every tier but the last, which covers everything above
+        bounds = new int[tiers.size() - 1];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = tiers.get(i).maxPing();
+        }
+
+        // Make sure every bound falls inside the lookup table, so tiers are exact for every listed ping
+        int size = bounds.length == 0 ? MIN_LOOKUP_SIZE
+                : Math.min(MAX_LOOKUP_SIZE, Math.max(MIN_LOOKUP_SIZE, bounds[bounds.length - 1] + 2));
+
+        lookup = new byte[size];
+        for (int ping = 0; ping < size; ping++) {
+            lookup[ping] = (byte) scan(ping);
+        }
+
+        // Build the suffix of every ping in its own tier up front.
+        // Suffixes of a ping shown in a neighbouring tier (because of hysteresis) are built on first use.
+        suffixes = new AtomicReferenceArray<>(tiers.size() * size);
+        overflow = new Component[tiers.size()];
+        for (int ping = 0; ping < size; ping++) {
+            suffixes.set(lookup[ping] * size + ping, buildSuffix(lookup[ping], ping));
+        }
+        for (int tier = 0; tier < tiers.size(); tier++) {
+            overflow[tier] = Component.text(" [" + size + "+ ms]", tiers.get(tier).color());
+        }
+    }
+
+    /**
+     * Compiles a classifier from a list of tiers.
+     * The tiers must be sorted by their highest ping, and the last tier must cover every ping above the others.
+     *
+     * @param tiers the tiers, from best to worst
+     * @return the compiled classifier
+     * @throws IllegalArgumentException if the tiers are empty, unsorted or the last tier is bounded
+     */
+    public static LatencyClassifier compile(@NotNull List<Tier> tiers) {
+        if (tiers.isEmpty() || tiers.size() > MAX_TIERS) {
+            throw new IllegalArgumentException("There must be between 1 and " + MAX_TIERS + " latency tiers.");
+        }
+        for (int i = 0; i < tiers.size() - 1; i++) {
+            if (tiers.get(i).maxPing() < 0 || (i > 0 && tiers.get(i).maxPing() <= tiers.get(i - 1).maxPing())) {
+                throw new IllegalArgumentException("Latency tier bounds must be non-negative and strictly increasing.");
+            }
+        }
+        if (tiers.get(tiers.size() - 1).maxPing() != Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The last latency tier must not have a maximum ping.");
+        }
+        return new LatencyClassifier(tiers);
+    }
+
+    /**
+     * Builds the default tiers (excellent, good, ok, bad and terrible) for the given thresholds.
+     *
+     * @param pingThresholds the sorted excellent, good, medium and bad thresholds
+     * @return the default tiers with these thresholds
+     */
+    public static List<Tier> defaultTiers(@NotNull List<Integer> pingThresholds) {
+        if (pingThresholds.size() != DEFAULT_LABELS.length - 1) {
+            throw new IllegalArgumentException("Ping times list must contain exactly " + (DEFAULT_LABELS.length - 1) + " values.");
+        }
+
+        List<Tier> tiers = new ArrayList<>();
+        for (int i = 0; i < DEFAULT_LABELS.length; i++) {
+            int maxPing = i < pingThresholds.size() ? pingThresholds.get(i) : Integer.MAX_VALUE;
+            tiers.add(new Tier(DEFAULT_LABELS[i], maxPing, DEFAULT_COLORS[i]));
+        }
+        return tiers;
+    }
+
+    /**
+     * Gets the tiers this classifier was compiled from.
+     *
+     * @return an immutable list of the tiers, from best to worst
+     */
+    public List<Tier> getTiers() {
+        return tiers;
+    }
+
+    /**
+     * Gets the highest ping of every tier but the last.
+     *
+     * @return the tier thresholds, from best to worst
+     */
+    public List<Integer> getThresholds() {
+        List<Integer> thresholds = new ArrayList<>(bounds.length);
+        for (int bound : bounds) {
+            thresholds.add(bound);
+        }
+        return thresholds;
+    }
+
+    /**
+     * Gets the number of tiers.
+     *
+     * @return the tier count
+     */
+    public int getTierCount() {
+        return tiers.size();
+    }
+
+    /**
+     * Gets a tier by its index.
+     *
+     * @param index the tier index, as returned by {@link #classify(int)}
+     * @return the tier
+     */
+    public Tier getTier(int index) {
+        return tiers.get(index);
+    }
+
+    /**
+     * Returns the tier index of a ping, from 0 (best) to {@link #getTierCount()} - 1 (worst).
+     * A ping belongs to the first tier whose highest ping it does not exceed.
+     *
+     * @param ping the ping value
+     * @return the tier index
+     */
+    public int classify(int ping) {
+        if (ping < 0) {
+            return 0;
+        }
+        return ping < lookup.length ? lookup[ping] : scan(ping);
+    }
+
+    /**
+     * Returns the tier index of a ping, only leaving the current tier once the ping crossed its boundary by a margin.
+     * This keeps a ping hovering around a threshold from flipping between two tiers on every update.
+     *
+     * @param ping        the ping value
+     * @param currentTier the tier currently shown
+     * @param margin      how far past a boundary the ping must be, in milliseconds
+     * @return the new tier index
+     */
+    public int classify(int ping, int currentTier, int margin) {
+        if (currentTier >= tiers.size()) {
+            return classify(ping);
+        }
+        int higher = classify(ping - margin);
+        if (higher > currentTier) {
+            return higher;
+        }
+        int lower = classify(ping + margin);
+        if (lower < currentTier) {
+            return lower;
+        }
+        return currentTier;
+    }
+
+    /**
+     * Returns the shared suffix component for a ping shown in the given tier.
+     *
+     * @param tier the tier index, as returned by {@link #classify(int)}
+     * @param ping the ping value
+     * @return the suffix component
+     */
+    public Component suffix(int tier, int ping) {
+        if (ping < 0) {
+            ping = 0;
+        }
+        if (ping >= lookup.length) {
+            return overflow[tier];
+        }
+
+        // Build a missing suffix on first use. If another thread got there first, its suffix is kept,
+        // so the same ping and tier always map to the same component.
+        int index = tier * lookup.length + ping;
+        Component suffix = suffixes.get(index);
+        if (suffix == null) {
+            Component built = buildSuffix(tier, ping);
+            suffix = suffixes.compareAndSet(index, null, built) ? built : suffixes.get(index);
+        }
+        return suffix;
+    }
+
+    /**
+     * Builds the suffix component of a ping shown in a tier.
+     *
+     * @param tier the tier index
+     * @param ping the ping value
+     * @return the new suffix component
+     */
+    private Component buildSuffix(int tier, int ping) {
+        return Component.text(" [" + ping + " ms]", tiers.get(tier).color());
+    }
+
+    /**
+     * Finds the tier of a ping by comparing it with the tier bounds.
+     *
+     * @param ping the ping value
+     * @return the tier index
+     */
+    private int scan(int ping) {
+        int tier = 0;
+        while (tier < bounds.length && ping > bounds[tier]) {
+            tier++;
+        }
+        return tier;
+    }
+
+    /**
+     * A latency tier.
+     *
+     * @param label   the name of the tier, shown in messages
+     * @param maxPing the highest ping in this tier, or {@link Integer#MAX_VALUE} for the last tier
+     * @param color   the color of the tier
+     */
+    public record Tier(String label, int maxPing, NamedTextColor color) {
+    }
+}
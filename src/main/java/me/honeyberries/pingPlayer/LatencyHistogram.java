@@ -0,0 +1,329 @@
+package me.honeyberries.pingPlayer;
+
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A histogram of the current ping of all online players, with logarithmic buckets like HdrHistogram.
+ * <p>
+ * Pings below 32 ms get a bucket each. Above that, every power of two is split into 16 buckets,
+ * so a bucket is never wider than about 6% of its value. Pings of 65535 ms and above share the last bucket.
+ * <p>
+ * The histogram is updated incrementally with each sampled ping: the player is moved from the bucket
+ * of their previous ping to the bucket of the new one, and the same is done for the latency tier counts.
+ * Queries therefore never scan the online players. Every bucket also knows its players,
+ * so the worst or best players, or any page of the ranking, are found by walking the buckets from one end.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    static final int MAX_VALUE = 65535;
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private static final Comparator<PlayerPing> LOWEST_FIRST = Comparator.comparingInt(PlayerPing::ping)
+            .thenComparing(PlayerPing::name, String.CASE_INSENSITIVE_ORDER);
+    private static final Comparator<PlayerPing> HIGHEST_FIRST = Comparator.comparingInt(PlayerPing::ping).reversed()
+            .thenComparing(PlayerPing::name, String.CASE_INSENSITIVE_ORDER);
+
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    private final int[] counts = new int[BUCKET_COUNT];
+    private long pingSum;
+    private final List<Set<Entry>> members = new ArrayList<>(BUCKET_COUNT);
+
+    // The tier counts, for the classifier they were counted with
+    private LatencyClassifier classifier;
+    private int[] tierCounts = new int[0];
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            members.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Records the current ping of a player, replacing their previous ping.
+     * If the classifier changed since the last call (after a reload), the tier counts are recounted.
+     *
+     * @param player     the player
+     * @param ping       the player's ping in milliseconds
+     * @param classifier the latency classifier of the current settings
+     */
+    public synchronized void record(Player player, int ping, LatencyClassifier classifier) {
+        if (classifier != this.classifier) {
+            recountTiers(classifier);
+        }
+
+        int bucket = bucketIndex(ping);
+        int tier = classifier.classify(ping);
+        Entry entry = entries.get(player.getUniqueId());
+
+        if (entry == null) {
+            entry = new Entry(player.getName());
+            entries.put(player.getUniqueId(), entry);
+        } else {
+            // Take the player out of the bucket and tier of their previous ping
+            if (entry.bucket != bucket) {
+                counts[entry.bucket]--;
+                members.get(entry.bucket).remove(entry);
+            }
+            tierCounts[entry.tier]--;
+            pingSum -= entry.ping;
+        }
+
+        if (entry.bucket != bucket) {
+            counts[bucket]++;
+            members.get(bucket).add(entry);
+        }
+        tierCounts[tier]++;
+        pingSum += ping;
+
+        entry.ping = ping;
+        entry.bucket = bucket;
+        entry.tier = tier;
+    }
+
+    /**
+     * Removes a player from the histogram. Called when the player quits.
+     *
+     * @param player the player
+     */
+    public synchronized void untrack(Player player) {
+        Entry entry = entries.remove(player.getUniqueId());
+        if (entry == null) {
+            return;
+        }
+
+        counts[entry.bucket]--;
+        members.get(entry.bucket).remove(entry);
+        tierCounts[entry.tier]--;
+        pingSum -= entry.ping;
+    }
+
+    /**
+     * Summarizes the histogram: the percentiles, the tier counts and the worst players.
+     *
+     * @param worstCount the number of worst players to include
+     * @return the summary
+     */
+    public synchronized Summary summary(int worstCount) {
+        int players = entries.size();
+
+        // The highest ping is in the highest non-empty bucket
+        int max = 0;
+        for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                for (Entry entry : members.get(i)) {
+                    max = Math.max(max, entry.ping);
+                }
+                break;
+            }
+        }
+
+        // The worst players are the first page of the ranking from the top
+        List<PlayerPing> worst = rank(true, 0, worstCount);
+
+        return new Summary(players, percentile(0.50, players, max), percentile(0.90, players, max),
+                percentile(0.99, players, max), max, classifier, tierCounts.clone(), worst);
+    }
+
+    /**
+     * Ranks the players by ping, for one page of the ranking.
+     * Whole buckets before the page are skipped by their counts, and only the buckets on the page are sorted,
+     * so a page costs about the same no matter how many players are online.
+     *
+     * @param highestFirst true to rank the highest ping first, false to rank the lowest ping first
+     * @param offset       the number of ranked players to skip
+     * @param count        the number of players on the page
+     * @return the ranking
+     */
+    public synchronized Ranking ranking(boolean highestFirst, int offset, int count) {
+        return new Ranking(entries.size(), rank(highestFirst, offset, count));
+    }
+
+    /**
+     * Copies the bucket counts, the sum of all pings and the tier counts.
+     *
+     * @return the distribution
+     */
+    public synchronized Distribution distribution() {
+        return new Distribution(counts.clone(), pingSum, classifier, tierCounts.clone());
+    }
+
+    /**
+     * Walks the buckets from one end and collects the players of one page of the ranking.
+     * Players with the same ping are ordered by name.
+     *
+     * @param highestFirst true to start at the highest ping
+     * @param offset       the number of ranked players to skip
+     * @param count        the number of players to collect
+     * @return the players of the page
+     */
+    private List<PlayerPing> rank(boolean highestFirst, int offset, int count) {
+        List<PlayerPing> ranked = new ArrayList<>(Math.max(0, Math.min(count, entries.size() - offset)));
+        int skip = offset;
+
+        for (int step = 0; step < BUCKET_COUNT && ranked.size() < count; step++) {
+            int i = highestFirst ? BUCKET_COUNT - 1 - step : step;
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (skip >= counts[i]) {
+                skip -= counts[i];
+                continue;
+            }
+
+            List<PlayerPing> bucket = new ArrayList<>(counts[i]);
+            for (Entry entry : members.get(i)) {
+                bucket.add(new PlayerPing(entry.name, entry.ping));
+            }
+            bucket.sort(highestFirst ? HIGHEST_FIRST : LOWEST_FIRST);
+            ranked.addAll(bucket.subList(skip, Math.min(bucket.size(), skip + count - ranked.size())));
+            skip = 0;
+        }
+        return ranked;
+    }
+
+    /**
+     * Gets the bucket of a ping.
+     *
+     * @param value the ping in milliseconds
+     * @return the bucket index
+     */
+    static int bucketIndex(int value) {
+        int clamped = Math.max(0, Math.min(MAX_VALUE, value));
+        if (clamped < SUB_BUCKET_COUNT) {
+            return clamped;
+        }
+
+        // Keep the top five bits of the value: the position of the highest bit selects a group of 16 buckets
+        int shift = 31 - Integer.numberOfLeadingZeros(clamped) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + ((clamped >> shift) - SUB_BUCKET_HALF_COUNT);
+    }
+
+    /**
+     * Gets the highest ping that falls into a bucket.
+     *
+     * @param index the bucket index
+     * @return the highest ping of the bucket in milliseconds
+     */
+    static int highestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Finds the ping below or at which the given fraction of the players are.
+     * The result is the highest ping of the matching bucket, but never more than the highest ping seen.
+     *
+     * @param quantile the fraction of players, like 0.99
+     * @param players  the number of players
+     * @param max      the highest ping
+     * @return the percentile in milliseconds, or 0 if there are no players
+     */
+    private int percentile(double quantile, int players, int max) {
+        if (players == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(quantile * players));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Counts the players per tier again for a new classifier.
+     *
+     * @param classifier the new latency classifier
+     */
+    private void recountTiers(LatencyClassifier classifier) {
+        this.classifier = classifier;
+        tierCounts = new int[classifier.getTierCount()];
+        for (Entry entry : entries.values()) {
+            entry.tier = classifier.classify(entry.ping);
+            tierCounts[entry.tier]++;
+        }
+    }
+
+    /**
+     * The last recorded ping of a player and where it is counted.
+     */
+    private static final class Entry {
+        private final String name;
+        private int ping;
+        private int bucket = -1;
+        private int tier;
+
+        Entry(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * The ping of a player at the time of a summary.
+     *
+     * @param name the player name
+     * @param ping the ping in milliseconds
+     */
+    public record PlayerPing(String name, int ping) {
+    }
+
+    /**
+     * One page of the players ranked by ping.
+     *
+     * @param players the number of players in the whole ranking
+     * @param page    the players on the page, in rank order
+     */
+    public record Ranking(int players, List<PlayerPing> page) {
+    }
+
+    /**
+     * The raw contents of the histogram.
+     *
+     * @param counts     the number of players in every bucket, indexed like {@link #bucketIndex(int)}
+     * @param sum        the sum of the pings of all players in milliseconds
+     * @param classifier the classifier the tier counts were counted with, or null if nothing was recorded yet
+     * @param tierCounts the number of players per latency tier
+     */
+    public record Distribution(int[] counts, long sum, LatencyClassifier classifier, int[] tierCounts) {
+    }
+
+    /**
+     * A summary of the latency of all online players.
+     *
+     * @param players    the number of players
+     * @param p50        the median ping
+     * @param p90        the 90th percentile ping
+     * @param p99        the 99th percentile ping
+     * @param max        the highest ping
+     * @param classifier the classifier the tier counts were counted with, or null if nothing was recorded yet
+     * @param tierCounts the number of players per latency tier
+     * @param worst      the players with the highest ping, highest first
+     */
+    public record Summary(int players, int p50, int p90, int p99, int max,
+                          LatencyClassifier classifier, int[] tierCounts, List<PlayerPing> worst) {
+    }
+}
@@ -0,0 +1,214 @@
+package me.honeyberries.pingPlayer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the plugin's metrics in the Prometheus text format on {@code /metrics},
+ * using the HTTP server that ships with the JDK.
+ * <p>
+ * Every metric is read from counters and histograms that are updated as the plugin runs,
+ * so a scrape only copies a few numbers and never waits for, or schedules work on, the main thread.
+ * Requests are handled one at a time on a single background thread.
+ */
+public class MetricsExporter {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PingPlayer plugin = PingPlayer.getInstance();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String address;
+    private int port;
+
+    /**
+     * Starts serving metrics on an address and port.
+     * If the exporter already runs on the same address and port, nothing happens; otherwise it is restarted.
+     *
+     * @param address the address to listen on, like 127.0.0.1
+     * @param port    the port to listen on
+     */
+    public synchronized void start(String address, int port) {
+        if (server != null) {
+            if (Objects.equals(this.address, address) && this.port == port) {
+                return;
+            }
+            stop();
+        }
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PingPlayer Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        } catch (IOException e) {
+            e.printStackTrace();
+            plugin.getLogger().warning("Failed to start the metrics endpoint on " + address + ":" + port + ".");
+            executor.shutdown();
+            executor = null;
+            return;
+        }
+
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        this.address = address;
+        this.port = port;
+        plugin.getLogger().info("Serving metrics on http://" + address + ":" + port + "/metrics");
+    }
+
+    /**
+     * Stops serving metrics.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Answers a scrape with the current metrics.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response could not be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text format.
+     *
+     * @return the metrics
+     */
+    String render() {
+        StringBuilder out = new StringBuilder(4096);
+        LatencyHistogram.Distribution distribution = plugin.getLatencyHistogram().distribution();
+
+        // Players per latency tier
+        header(out, "pingplayer_players", "gauge", "Online players per latency tier.");
+        LatencyClassifier classifier = distribution.classifier();
+        if (classifier != null) {
+            for (int i = 0; i < classifier.getTierCount(); i++) {
+                out.append("pingplayer_players{tier=\"").append(escape(classifier.getTier(i).label())).append("\"} ")
+                        .append(distribution.tierCounts()[i]).append('\n');
+            }
+        }
+
+        // The ping histogram, with a bucket boundary at every power of two
+        header(out, "pingplayer_player_ping_seconds", "histogram", "Ping of the online players.");
+        int[] counts = distribution.counts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            int highest = LatencyHistogram.highestValue(i);
+            if (((highest + 1) & highest) == 0) {
+                out.append("pingplayer_player_ping_seconds_bucket{le=\"").append(highest / 1000.0).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+        }
+        out.append("pingplayer_player_ping_seconds_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append("pingplayer_player_ping_seconds_sum ").append(distribution.sum() / 1000.0).append('\n');
+        out.append("pingplayer_player_ping_seconds_count ").append(cumulative).append('\n');
+
+        // The plugin's own work
+        duration(out, "pingplayer_tab_update_duration_seconds", "Time spent in the tab update task.",
+                plugin.getTabUpdateTask().getRunDurations());
+
+        TabRenderCache renderCache = plugin.getTabRenderCache();
+        header(out, "pingplayer_tab_updates_sent_total", "counter", "Tab list names sent to players.");
+        out.append("pingplayer_tab_updates_sent_total ").append(renderCache.getSentUpdates()).append('\n');
+        header(out, "pingplayer_tab_updates_skipped_total", "counter", "Tab list updates skipped because nothing visible changed.");
+        out.append("pingplayer_tab_updates_skipped_total ").append(renderCache.getSkippedUpdates()).append('\n');
+
+        TierTeams tierTeams = plugin.getTierTeams();
+        header(out, "pingplayer_tier_team_changes_total", "counter", "Players moved to another tier team.");
+        out.append("pingplayer_tier_team_changes_total ").append(tierTeams.getChanges()).append('\n');
+        header(out, "pingplayer_tier_team_updates_skipped_total", "counter", "Tier team updates skipped because the tier did not change.");
+        out.append("pingplayer_tier_team_updates_skipped_total ").append(tierTeams.getSkippedUpdates()).append('\n');
+
+        ViewerTeams viewerTeams = plugin.getViewerTeams();
+        header(out, "pingplayer_viewers", "gauge", "Players with their own scoreboard in the viewer display mode.");
+        out.append("pingplayer_viewers ").append(viewerTeams.getViewerCount()).append('\n');
+        header(out, "pingplayer_viewer_tier_changes_total", "counter", "Tier changes in the viewer display mode.");
+        out.append("pingplayer_viewer_tier_changes_total ").append(viewerTeams.getChanges()).append('\n');
+        header(out, "pingplayer_viewer_batches_total", "counter", "Team batches sent to viewers.");
+        out.append("pingplayer_viewer_batches_total ").append(viewerTeams.getBatches()).append('\n');
+        header(out, "pingplayer_viewer_entries_total", "counter", "Team entries sent to viewers in all batches.");
+        out.append("pingplayer_viewer_entries_total ").append(viewerTeams.getSentEntries()).append('\n');
+
+        LagSpikeDetector lagSpikeDetector = plugin.getLagSpikeDetector();
+        header(out, "pingplayer_lag_spikes_total", "counter", "Lag spikes detected.");
+        out.append("pingplayer_lag_spikes_total ").append(lagSpikeDetector.getSpikes()).append('\n');
+        header(out, "pingplayer_sustained_high_latency_total", "counter", "Times a player's ping stayed high for longer than the configured time.");
+        out.append("pingplayer_sustained_high_latency_total ").append(lagSpikeDetector.getSustained()).append('\n');
+        header(out, "pingplayer_lag_alerts_sent_total", "counter", "Lag alerts sent to staff.");
+        out.append("pingplayer_lag_alerts_sent_total ").append(lagSpikeDetector.getAlertsSent()).append('\n');
+        header(out, "pingplayer_lag_alerts_delayed_total", "counter", "Lag alerts held back by the alert limit.");
+        out.append("pingplayer_lag_alerts_delayed_total ").append(lagSpikeDetector.getAlertsDelayed()).append('\n');
+
+        PingSettings settings = PingSettings.getInstance();
+        duration(out, "pingplayer_config_reload_duration_seconds", "Time spent loading config.yml.", settings.getReloadDurations());
+        duration(out, "pingplayer_config_save_duration_seconds", "Time spent writing config.yml.", settings.getSaveDurations());
+
+        return out.toString();
+    }
+
+    /**
+     * Appends the HELP and TYPE lines of a metric.
+     */
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Appends a duration counter as a Prometheus summary without quantiles.
+     */
+    private static void duration(StringBuilder out, String name, String help, DurationCounter counter) {
+        header(out, name, "summary", help);
+        out.append(name).append("_sum ").append(counter.getTotalNanos() / 1_000_000_000.0).append('\n');
+        out.append(name).append("_count ").append(counter.getCount()).append('\n');
+    }
+
+    /**
+     * Escapes a label value for the Prometheus text format.
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,126 @@
+package me.honeyberries.pingPlayer;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the plugin's permissions for every online player.
+ * Permission backends can be slow to query, and the tab update task checks pingplayer.viewping for every player
+ * on every update, so the results are resolved once and stored as bits in a single field per player.
+ * Entries are resolved when a player joins, refreshed when their permissions may have changed
+ * (world change, command tree resend) and after a configurable time, and removed when they quit.
+ * Only loops over all players use the cache; commands check the sender's permission directly,
+ * so a revoked permission takes effect at once.
+ */
+public class PermissionCache {
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long refreshNanos = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Resolves and caches the permissions of a player.
+     *
+     * @param player the player
+     */
+    public void refresh(Player player) {
+        resolve(player);
+    }
+
+    /**
+     * Removes the cached permissions of a player. Called when the player quits.
+     *
+     * @param player the player to forget
+     */
+    public void untrack(Player player) {
+        entries.remove(player.getUniqueId());
+    }
+
+    /**
+     * Changes how long cached permissions are trusted before they are resolved again.
+     *
+     * @param seconds the refresh interval in seconds, or 0 to only refresh on events
+     */
+    public void setRefreshSeconds(int seconds) {
+        refreshNanos = seconds > 0 ? TimeUnit.SECONDS.toNanos(seconds) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks whether a command sender has a permission.
+     * Players are answered from the cache; other senders, such as the console, are asked directly.
+     *
+     * @param sender     the command sender
+     * @param permission the permission to check
+     * @return true if the sender has the permission
+     */
+    public boolean has(CommandSender sender, Permission permission) {
+        if (!(sender instanceof Player player)) {
+            return sender.hasPermission(permission.getNode());
+        }
+
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry == null || System.nanoTime() - entry.resolvedAt > refreshNanos) {
+            entry = resolve(player);
+        }
+        return (entry.bits & permission.bit) != 0;
+    }
+
+    /**
+     * Resolves every plugin permission of a player and stores the result.
+     *
+     * @param player the player
+     * @return the new cache entry
+     */
+    private Entry resolve(Player player) {
+        int bits = 0;
+        for (Permission permission : Permission.values()) {
+            if (player.hasPermission(permission.getNode())) {
+                bits |= permission.bit;
+            }
+        }
+
+        Entry entry = new Entry(bits, System.nanoTime());
+        entries.put(player.getUniqueId(), entry);
+        return entry;
+    }
+
+    /**
+     * The permissions of the plugin that are cached.
+     */
+    public enum Permission {
+        PING("pingplayer.ping"),
+        IP("pingplayer.ip"),
+        SETTINGS("pingplayer.settings"),
+        VIEWPING("pingplayer.viewping"),
+        ALERTS("pingplayer.alerts");
+
+        private final String node;
+        private final int bit;
+
+        Permission(String node) {
+            this.node = node;
+            this.bit = 1 << ordinal();
+        }
+
+        /**
+         * Gets the permission node, for example "pingplayer.ping".
+         *
+         * @return the permission node
+         */
+        public String getNode() {
+            return node;
+        }
+    }
+
+    /**
+     * The resolved permissions of a player, as one bit per {@link Permission}.
+     *
+     * @param bits       the permission bits
+     * @param resolvedAt when the permissions were resolved, from {@link System#nanoTime()}
+     */
+    private record Entry(int bits, long resolvedAt) {
+    }
+}
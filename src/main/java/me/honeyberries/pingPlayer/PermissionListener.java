@@ -0,0 +1,37 @@
+package me.honeyberries.pingPlayer;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
+
+/**
+ * Refreshes the cached permissions of a player when they may have changed.
+ */
+public class PermissionListener implements Listener {
+
+    private final PingPlayer plugin = PingPlayer.getInstance();
+
+    /**
+     * Refreshes a player's permissions when they change worlds, as permissions can be per world.
+     *
+     * @param event the world change event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        plugin.getPermissionCache().refresh(event.getPlayer());
+    }
+
+    /**
+     * Refreshes a player's permissions when their command tree is resent.
+     * The server does this when a player is opped or deopped, and permission plugins do it after
+     * recalculating a player's permissions, so this is the closest thing to a permission change event.
+     *
+     * @param event the command send event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerCommandSend(PlayerCommandSendEvent event) {
+        plugin.getPermissionCache().refresh(event.getPlayer());
+    }
+}
@@ -11,19 +11,55 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles the /ping command to get player ping information.
  */
 public class PingCommand implements CommandExecutor, TabExecutor {
 
+    // The subcommands offered in tab completion, and the ones that rank players
+    private static final List<String> SUBCOMMANDS = List.of("top", "worst", "list", "help");
+    private static final Set<String> RANKINGS = Set.of("top", "worst", "list");
+
+    private static final int DEFAULT_RANKED_PLAYERS = 10;
+    private static final int MAX_RANKED_PLAYERS = 50;
+    private static final int LIST_PAGE_SIZE = 10;
+
+    // How long a ranking reply is reused
+    private static final long RANKING_CACHE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final PingPlayer plugin = PingPlayer.getInstance();
 
+    // The recent ranking replies, by the query that produced them
+    private final Map<String, CachedReply> rankingCache = new ConcurrentHashMap<>();
+
     @Override
-    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command,
-                             @NotNull String label, @NotNull String[] args) {
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        long start = System.nanoTime();
+        long allocated = plugin.getProfiler().allocatedBytes();
+        try {
+            return execute(sender, command, label, args);
+        } finally {
+            plugin.getProfiler().record(Profiler.Section.COMMAND_PING, start, allocated, 1);
+        }
+    }
+
+    /**
+     * Runs the /ping command. Called by {@link #onCommand}, which records its cost in the profiler.
+     *
+     * @param sender  the sender of the command
+     * @param command the command being executed
+     * @param label   the alias used for the command
+     * @param args    the command arguments
+     * @return true if the command was successfully executed, false otherwise
+     */
+    private boolean execute(@NotNull CommandSender sender, @NotNull Command command,
+                            @NotNull String label, @NotNull String[] args) {
 
         if (!(sender.hasPermission("pingplayer.ping"))) {
             sender.sendMessage(Component.text("You don't have permission to use this command.", NamedTextColor.RED));
@@ -32,12 +68,16 @@ public class PingCommand implements CommandExecutor, TabExecutor {
 
         if (args.length == 0) {
             handlePingForSender(sender); // No arguments: check sender's ping
+        } else if (isRankingCommand(args)) {
+            handleRanking(sender, args[0].toLowerCase(Locale.ROOT), args.length == 2 ? Integer.parseInt(args[1]) : -1);
         } else if (args.length == 1) {
             if (args[0].equalsIgnoreCase("help")) {
                 sendHelpMessage(sender);
             } else {
                 handlePingForPlayer(sender, args[0]);
             }
+        } else if (args.length == 2 && args[1].equalsIgnoreCase("stats")) {
+            handleStatsForPlayer(sender, args[0]);
         } else {
             sendHelpMessage(sender);
         }
@@ -53,9 +93,107 @@ public class PingCommand implements CommandExecutor, TabExecutor {
         sender.sendMessage(Component.text("Usage:\n", NamedTextColor.AQUA)
                 .append(Component.text("/ping - Check your own ping\n", NamedTextColor.GREEN))
                 .append(Component.text("/ping <player> - Check another player's ping\n", NamedTextColor.YELLOW))
+                .append(Component.text("/ping <player> stats - Show another player's recent ping statistics\n", NamedTextColor.GOLD))
+                .append(Component.text("/ping top [n] - Show the players with the lowest ping\n", NamedTextColor.GREEN))
+                .append(Component.text("/ping worst [n] - Show the players with the highest ping\n", NamedTextColor.YELLOW))
+                .append(Component.text("/ping list [page] - List all players by ping, highest first\n", NamedTextColor.GOLD))
         );
     }
 
+    /**
+     * Checks whether the arguments are /ping top, worst or list, optionally followed by a number.
+     * A second argument that is not a number, like in /ping top stats, refers to a player with that name,
+     * and so does the word on its own while a player with exactly that name is online.
+     *
+     * @param args the command arguments
+     * @return true if the arguments ask for a ranking
+     */
+    private boolean isRankingCommand(String[] args) {
+        if (args.length > 2 || !RANKINGS.contains(args[0].toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        if (args.length == 1) {
+            return Bukkit.getPlayerExact(args[0]) == null;
+        }
+        return args[1].matches("\\d{1,6}");
+    }
+
+    /**
+     * Handles /ping top, /ping worst and /ping list, answered from the latency histogram.
+     * The reply is cached for a second, so repeated queries within the same second cost nothing.
+     *
+     * @param sender   the sender of the command
+     * @param ranking  top, worst or list
+     * @param argument the number of players or the page, or -1 if it was not given
+     */
+    private void handleRanking(CommandSender sender, String ranking, int argument) {
+        int value = argument >= 0 ? argument : (ranking.equals("list") ? 1 : DEFAULT_RANKED_PLAYERS);
+        if (value < 1) {
+            sender.sendMessage(Component.text("The number must be at least 1.", NamedTextColor.RED));
+            return;
+        }
+        if (!ranking.equals("list")) {
+            value = Math.min(value, MAX_RANKED_PLAYERS);
+        }
+
+        String key = ranking + " " + value;
+        long now = System.nanoTime();
+        CachedReply cached = rankingCache.get(key);
+        if (cached == null || now - cached.createdAt() > RANKING_CACHE_NANOS) {
+            // Drop the replies that expired, so the cache stays as small as the set of recent queries
+            rankingCache.values().removeIf(reply -> now - reply.createdAt() > RANKING_CACHE_NANOS);
+            cached = new CachedReply(now, renderRanking(ranking, value));
+            rankingCache.put(key, cached);
+        }
+
+        sender.sendMessage(cached.message());
+        plugin.getAuditLog().record(sender, AuditLog.Action.PING_RANKING, key, null);
+    }
+
+    /**
+     * Renders a ranking reply.
+     *
+     * @param ranking top, worst or list
+     * @param value   the number of players, or the page for list
+     * @return the reply
+     */
+    private Component renderRanking(String ranking, int value) {
+        LatencyHistogram histogram = plugin.getLatencyHistogram();
+        LatencyHistogram.Ranking result;
+        String title;
+        int firstRank;
+
+        if (ranking.equals("list")) {
+            firstRank = (value - 1) * LIST_PAGE_SIZE + 1;
+            result = histogram.ranking(true, firstRank - 1, LIST_PAGE_SIZE);
+            int pages = Math.max(1, (result.players() + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE);
+            if (value > pages) {
+                return Component.text("There " + (pages == 1 ? "is only 1 page." : "are only " + pages + " pages."), NamedTextColor.RED);
+            }
+            title = "Players by Ping (page " + value + " of " + pages + ")";
+        } else {
+            firstRank = 1;
+            result = histogram.ranking(ranking.equals("worst"), 0, value);
+            title = (ranking.equals("worst") ? "Highest" : "Lowest") + " Ping (" + result.page().size() + " of " + result.players() + " players)";
+        }
+
+        if (result.page().isEmpty()) {
+            return Component.text("No ping samples have been recorded yet.", NamedTextColor.RED);
+        }
+
+        LatencyClassifier classifier = PingSettings.getInstance().getClassifier();
+        Component message = Component.text("----- " + title + " -----", NamedTextColor.GOLD);
+        int rank = firstRank;
+        for (LatencyHistogram.PlayerPing entry : result.page()) {
+            LatencyClassifier.Tier tier = classifier.getTier(classifier.classify(entry.ping()));
+            message = message.append(Component.newline())
+                    .append(Component.text(rank++ + ". ", NamedTextColor.GRAY))
+                    .append(Component.text(entry.name(), NamedTextColor.YELLOW))
+                    .append(Component.text(" - " + entry.ping() + " ms", tier.color()));
+        }
+        return message;
+    }
+
     /**
      * Handles the case where no arguments are provided and the sender is a player.
      *
@@ -63,7 +201,7 @@ public class PingCommand implements CommandExecutor, TabExecutor {
      */
     private void handlePingForSender(CommandSender sender) {
         if (sender instanceof Player player) {
-            sendPingMessage(sender, player.getName(), player.getPing());
+            sendPingMessage(sender, player, player.getPing());
         } else {
             sender.sendMessage(Component.text("You must be a player to use this command without arguments!", NamedTextColor.RED));
         }
@@ -80,46 +218,87 @@ public class PingCommand implements CommandExecutor, TabExecutor {
         if (player == null) {
             sender.sendMessage(Component.text("Player not found or offline. Please enter a valid username!", NamedTextColor.RED));
         } else {
-            sendPingMessage(sender, player.getName(), player.getPing());
+            sendPingMessage(sender, player, player.getPing());
         }
     }
 
+    /**
+     * Handles the "stats" mode, showing the rolling ping statistics of a player.
+     *
+     * @param sender the sender of the command
+     * @param playerName the player name
+     */
+    private void handleStatsForPlayer(CommandSender sender, String playerName) {
+        Player player = Bukkit.getPlayer(playerName);
+        if (player == null) {
+            sender.sendMessage(Component.text("Player not found or offline. Please enter a valid username!", NamedTextColor.RED));
+            return;
+        }
+
+        PingHistory.PingStats stats = plugin.getPingSampler().getStats(player);
+        if (stats == null) {
+            sender.sendMessage(Component.text("No ping samples have been recorded for " + player.getName() + " yet.", NamedTextColor.RED));
+            return;
+        }
+
+        plugin.getAuditLog().record(sender, AuditLog.Action.PING_STATS, player.getName(), String.valueOf(stats.last()));
+        sender.sendMessage(Component.text("----- " + player.getName() + "'s Ping Stats -----", NamedTextColor.GOLD));
+        sender.sendMessage(Component.text("Samples: ", NamedTextColor.GOLD)
+                .append(Component.text(stats.samples(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Current: ", NamedTextColor.GOLD)
+                .append(Component.text(stats.last() + " ms", NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Smoothed: ", NamedTextColor.GOLD)
+                .append(Component.text(stats.smoothed() + " ms", NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Min / Max: ", NamedTextColor.GOLD)
+                .append(Component.text(stats.min() + " ms / " + stats.max() + " ms", NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Average: ", NamedTextColor.GOLD)
+                .append(Component.text(String.format("%.1f ms", stats.mean()), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Jitter: ", NamedTextColor.GOLD)
+                .append(Component.text(String.format("%.1f ms", stats.jitter()), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("95th percentile: ", NamedTextColor.GOLD)
+                .append(Component.text("~" + stats.p95() + " ms", NamedTextColor.AQUA)));
+    }
+
     /**
      * Sends a formatted ping message to the sender.
+     * When smoothing is enabled, the smoothed ping is shown next to the raw ping.
      *
      * @param sender the sender of the command
-     * @param playerName the name of the player
+     * @param player the player whose ping is shown
      * @param ping the ping of the player
      */
-    private void sendPingMessage(CommandSender sender, String playerName, int ping) {
-        PingQuality pingQuality = getPingColorAndQuality(ping);
+    private void sendPingMessage(CommandSender sender, Player player, int ping) {
+        String playerName = player.getName();
+        LatencyClassifier.Tier tier = getTier(ping);
 
         Component pingMessage = Component.text(playerName + "'s latency is ", NamedTextColor.GREEN)
-                .append(Component.text(ping + " ms, which is " + pingQuality.quality + "!", pingQuality.color));
+                .append(Component.text(ping + " ms, which is " + tier.label() + "!", tier.color()));
+
+        if (PingSettings.getInstance().isSmoothingEnabled()) {
+            PingHistory.PingStats stats = plugin.getPingSampler().getStats(player);
+            if (stats != null) {
+                pingMessage = pingMessage.append(Component.text(" (smoothed: " + stats.smoothed() + " ms)", NamedTextColor.GRAY));
+            }
+        }
 
         sender.sendMessage(pingMessage);
-        plugin.getLogger().info(playerName + ": " + pingQuality.quality);
+        plugin.getAuditLog().record(sender, AuditLog.Action.PING, playerName, String.valueOf(ping));
     }
 
     /**
-     * Determines the color and quality description for a given ping value.
+     * Determines the latency tier, with its color and quality description, for a given ping value.
      *
      * @param ping the ping value
-     * @return a PingQuality object containing the appropriate color and description
+     * @return the tier of the ping
      */
-    private PingQuality getPingColorAndQuality(int ping) {
-        List<Integer> pingThresholds = PingSettings.getInstance().getPingThresholds();
-
-        if (ping < pingThresholds.get(0)) return new PingQuality(NamedTextColor.GREEN, "excellent");
-        if (ping < pingThresholds.get(1)) return new PingQuality(NamedTextColor.YELLOW, "good");
-        if (ping < pingThresholds.get(2)) return new PingQuality(NamedTextColor.GOLD, "ok");
-        if (ping < pingThresholds.get(3)) return new PingQuality(NamedTextColor.RED, "bad");
-
-        else return new PingQuality(NamedTextColor.DARK_RED, "terrible");
+    private LatencyClassifier.Tier getTier(int ping) {
+        LatencyClassifier classifier = PingSettings.getInstance().getClassifier();
+        return classifier.getTier(classifier.classify(ping));
     }
 
     /**
      * Provides tab completion for player names and special commands.
+     * Player names are looked up in the shared {@link PlayerNameIndex}.
      *
      * @param sender the sender of the command
      * @param command the command being executed
@@ -130,22 +309,29 @@ public class PingCommand implements CommandExecutor, TabExecutor {
     @Override
     public @Nullable List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
         if (args.length == 1) {
-            String partialName = args[0].toLowerCase();
-            return Stream.concat(
-                            Bukkit.getOnlinePlayers().stream()
-                                    .map(Player::getName),
-                            Stream.of("help")
-                    )
-                    .filter(option -> option.toLowerCase().startsWith(partialName))
-                    .collect(Collectors.toList());
+            String partialName = args[0].toLowerCase(Locale.ROOT);
+            List<String> completions = plugin.getPlayerNameIndex().complete(partialName, PingSettings.getInstance().getCompletionLimit());
+            for (String subcommand : SUBCOMMANDS) {
+                if (subcommand.startsWith(partialName)) {
+                    completions.add(subcommand);
+                }
+            }
+            return completions;
+        }
+
+        if (args.length == 2 && !args[0].equalsIgnoreCase("help") && "stats".startsWith(args[1].toLowerCase(Locale.ROOT))) {
+            return List.of("stats");
         }
 
         return List.of();
     }
 
     /**
-     * A simple record class to store ping quality information.
+     * A rendered ranking reply.
+     *
+     * @param createdAt the value of {@link System#nanoTime()} when the reply was rendered
+     * @param message   the reply
      */
-    private record PingQuality(NamedTextColor color, String quality) {
+    private record CachedReply(long createdAt, Component message) {
     }
 }
@@ -0,0 +1,187 @@
+package me.honeyberries.pingPlayer;
+
+/**
+ * A fixed-size ring buffer of a player's most recent ping samples.
+ * Rolling statistics are maintained incrementally as samples are added and evicted,
+ * so reading them never has to scan the history:
+ * - min and max use monotonic queues of sample sequence numbers
+ * - mean and jitter use running sums
+ * - the 95th percentile is estimated from a small histogram of 10 ms buckets
+ * It also keeps an exponentially weighted moving average of all samples, used for the smoothed display.
+ */
+public class PingHistory {
+
+    // Width of a percentile bucket in milliseconds
+    private static final int BUCKET_WIDTH = 10;
+
+    // Number of percentile buckets, the last one collects everything above
+    private static final int BUCKET_COUNT = 101;
+
+    private final int[] samples;
+    private final int[] buckets = new int[BUCKET_COUNT];
+
+    // Monotonic queues of sequence numbers for the rolling min and max
+    private final int[] minQueue;
+    private final int[] maxQueue;
+    private int minHead, minSize;
+    private int maxHead, maxSize;
+
+    // Sequence number of the next sample, its index in the buffer is sequence % capacity
+    private int sequence;
+    private int count;
+    private long sum;
+    private long jitterSum;
+    private double smoothed;
+
+    /**
+     * Creates an empty history that keeps the given number of samples.
+     *
+     * @param capacity the maximum number of samples to keep
+     */
+    public PingHistory(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Ping history must hold at least 2 samples.");
+        }
+        samples = new int[capacity];
+        minQueue = new int[capacity];
+        maxQueue = new int[capacity];
+    }
+
+    /**
+     * Gets the maximum number of samples this history keeps.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return samples.length;
+    }
+
+    /**
+     * Records a new ping sample, evicting the oldest one if the buffer is full.
+     *
+     * @param ping  the ping sample in milliseconds
+     * @param alpha the weight of the new sample in the moving average, between 0 and 1
+     * @return the smoothed ping after this sample, rounded to whole milliseconds
+     */
+    public synchronized int record(int ping, double alpha) {
+        if (ping < 0) {
+            ping = 0;
+        }
+
+        // Update the moving average, starting from the first sample
+        smoothed = sequence == 0 ? ping : smoothed + alpha * (ping - smoothed);
+
+        int capacity = samples.length;
+
+        // Evict the oldest sample when the buffer is full
+        if (count == capacity) {
+            int oldestSeq = sequence - capacity;
+            int oldest = samples[Math.floorMod(oldestSeq, capacity)];
+            int secondOldest = samples[Math.floorMod(oldestSeq + 1, capacity)];
+
+            sum -= oldest;
+            jitterSum -= Math.abs(secondOldest - oldest);
+            buckets[bucketOf(oldest)]--;
+
+            if (minSize > 0 && minQueue[minHead] == oldestSeq) {
+                minHead = (minHead + 1) % capacity;
+                minSize--;
+            }
+            if (maxSize > 0 && maxQueue[maxHead] == oldestSeq) {
+                maxHead = (maxHead + 1) % capacity;
+                maxSize--;
+            }
+            count--;
+        }
+
+        // Add the new sample
+        if (count > 0) {
+            jitterSum += Math.abs(ping - samples[Math.floorMod(sequence - 1, capacity)]);
+        }
+        samples[Math.floorMod(sequence, capacity)] = ping;
+        sum += ping;
+        buckets[bucketOf(ping)]++;
+
+        // Drop queued samples that can no longer be the min or max
+        while (minSize > 0 && samples[Math.floorMod(minQueue[(minHead + minSize - 1) % capacity], capacity)] >= ping) {
+            minSize--;
+        }
+        minQueue[(minHead + minSize) % capacity] = sequence;
+        minSize++;
+
+        while (maxSize > 0 && samples[Math.floorMod(maxQueue[(maxHead + maxSize - 1) % capacity], capacity)] <= ping) {
+            maxSize--;
+        }
+        maxQueue[(maxHead + maxSize) % capacity] = sequence;
+        maxSize++;
+
+        sequence++;
+        count++;
+        return (int) Math.round(smoothed);
+    }
+
+    /**
+     * Takes a snapshot of the rolling statistics.
+     *
+     * @return the current statistics, or null if no samples were recorded yet
+     */
+    public synchronized PingStats stats() {
+        if (count == 0) {
+            return null;
+        }
+
+        int capacity = samples.length;
+        int last = samples[Math.floorMod(sequence - 1, capacity)];
+        int min = samples[Math.floorMod(minQueue[minHead], capacity)];
+        int max = samples[Math.floorMod(maxQueue[maxHead], capacity)];
+        double mean = (double) sum / count;
+        double jitter = count > 1 ? (double) jitterSum / (count - 1) : 0;
+
+        return new PingStats(count, last, min, max, mean, jitter, estimatePercentile(0.95, max), (int) Math.round(smoothed));
+    }
+
+    /**
+     * Estimates a percentile from the bucket histogram.
+     * The result is the upper bound of the bucket holding the percentile, capped at the actual maximum.
+     *
+     * @param percentile the percentile between 0 and 1
+     * @param max the current maximum, used to cap the estimate
+     * @return the estimated percentile in milliseconds
+     */
+    private int estimatePercentile(double percentile, int max) {
+        int rank = (int) Math.ceil(percentile * count);
+        int seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank) {
+                return bucket == BUCKET_COUNT - 1 ? max : Math.min(max, (bucket + 1) * BUCKET_WIDTH - 1);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the percentile bucket of a ping value.
+     *
+     * @param ping the ping value
+     * @return the bucket index
+     */
+    private static int bucketOf(int ping) {
+        return Math.min(ping / BUCKET_WIDTH, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * A snapshot of a player's rolling ping statistics.
+     *
+     * @param samples the number of samples in the window
+     * @param last    the most recent sample
+     * @param min     the lowest sample in the window
+     * @param max     the highest sample in the window
+     * @param mean    the average of the window
+     * @param jitter  the average difference between consecutive samples
+     * @param p95     the approximate 95th percentile
+     * @param smoothed the exponentially weighted moving average
+     */
+    public record PingStats(int samples, int last, int min, int max, double mean, double jitter, int p95, int smoothed) {
+    }
+}
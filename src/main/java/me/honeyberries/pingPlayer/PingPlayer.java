@@ -1,7 +1,11 @@
 package me.honeyberries.pingPlayer;
 
+import org.bukkit.command.PluginCommand;
+import org.bukkit.command.TabExecutor;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.Nullable;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * The main class for the PingPlayer plugin.
@@ -9,7 +13,21 @@ import java.util.Objects;
  */
 public final class PingPlayer extends JavaPlugin {
 
-    private Task tabUpdateTask;
+    private final TabRenderCache tabRenderCache = new TabRenderCache();
+    private final TierTeams tierTeams = new TierTeams();
+    private final ViewerTeams viewerTeams = new ViewerTeams();
+    private final PingSampler pingSampler = new PingSampler();
+    private final PermissionCache permissionCache = new PermissionCache();
+    private final LagSpikeDetector lagSpikeDetector = new LagSpikeDetector();
+    private final PlayerNameIndex playerNameIndex = new PlayerNameIndex();
+    private final AddressIndex addressIndex = new AddressIndex();
+    private final HistoryStore historyStore = new HistoryStore();
+    private final AuditLog auditLog = new AuditLog();
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    private final MetricsExporter metricsExporter = new MetricsExporter();
+    private final Profiler profiler = new Profiler();
+    private final ConfigWatcher configWatcher = new ConfigWatcher();
+    private TabUpdateTask tabUpdateTask;
 
     /**
      * Called when the plugin is enabled.
@@ -22,13 +40,40 @@ public final class PingPlayer extends JavaPlugin {
         // Load the plugin settings
         PingSettings.getInstance().load();
 
-        // Set the command executors for the plugin commands
-        Objects.requireNonNull(getServer().getPluginCommand("ping")).setExecutor(new PingCommand());
-        Objects.requireNonNull(getServer().getPluginCommand("ip")).setExecutor(new IPCommand());
-        Objects.requireNonNull(getServer().getPluginCommand("pingplayer")).setExecutor(new PingPlayerCommand());
+        // Set the command executors for the plugin commands, and complete them asynchronously where supported
+        AsyncTabCompleteListener tabCompleteListener = new AsyncTabCompleteListener();
+        registerCommand("ping", new PingCommand(), tabCompleteListener);
+        registerCommand("ip", new IPCommand(), tabCompleteListener);
+        registerCommand("pingplayer", new PingPlayerCommand(), tabCompleteListener);
 
-        // Schedule the tab update task using the Scheduler class
-        tabUpdateTask = Scheduler.runTaskTimer(() -> new TabUpdateTask().run(), 1, 1);
+        // Track players that are already online (e.g. after a reload)
+        getServer().getOnlinePlayers().forEach(tabRenderCache::track);
+        getServer().getOnlinePlayers().forEach(pingSampler::track);
+        getServer().getOnlinePlayers().forEach(permissionCache::refresh);
+        getServer().getOnlinePlayers().forEach(player -> playerNameIndex.add(player.getName()));
+        getServer().getOnlinePlayers().forEach(addressIndex::add);
+
+        // Schedule the tab update task using the Scheduler class, and apply the rest of the settings
+        tabUpdateTask = new TabUpdateTask();
+        applySettings();
+
+        // Listen for joins and quits to keep the per-player state up to date
+        getServer().getPluginManager().registerEvents(new PlayerConnectionListener(), this);
+        getServer().getPluginManager().registerEvents(new PermissionListener(), this);
+        getServer().getPluginManager().registerEvents(tabCompleteListener, this);
+    }
+
+    /**
+     * Sets the executor of a plugin command and registers it for async tab completion.
+     *
+     * @param name                the command name from plugin.yml
+     * @param executor            the command executor, which is also its tab completer
+     * @param tabCompleteListener the async tab completion listener
+     */
+    private void registerCommand(String name, TabExecutor executor, AsyncTabCompleteListener tabCompleteListener) {
+        PluginCommand command = Objects.requireNonNull(getServer().getPluginCommand(name));
+        command.setExecutor(executor);
+        tabCompleteListener.register(command, executor);
     }
 
     /**
@@ -39,10 +84,213 @@ public final class PingPlayer extends JavaPlugin {
     public void onDisable() {
         getLogger().info("PingPlayer has been disabled!");
 
-        // Cancel the tab update task if it is running
-        if (tabUpdateTask != null && !tabUpdateTask.isCancelled()) {
-            tabUpdateTask.cancel();
+        // Cancel the tab update timers if they are running
+        if (tabUpdateTask != null) {
+            tabUpdateTask.stop();
         }
+
+        // Remove the tier teams and give viewers the main scoreboard back, so nothing stays behind without the plugin
+        if (TierTeams.isSupported()) {
+            tierTeams.clear();
+            viewerTeams.clear();
+        }
+
+        // Stop the background services and write any configuration changes that are still pending
+        configWatcher.stop();
+        historyStore.stop();
+        auditLog.stop();
+        lagSpikeDetector.stop();
+        metricsExporter.stop();
+        PingSettings.getInstance().flush();
+
+        // Let running file reads finish and stop the I/O threads
+        Scheduler.shutdown();
+    }
+
+    /**
+     * Reloads the settings from config.yml in the background and applies them to the running tasks.
+     *
+     * @param callback called on the main thread with true if the settings were reloaded, or null
+     */
+    public void reloadSettings(@Nullable Consumer<Boolean> callback) {
+        PingSettings.getInstance().reloadAsync(success -> {
+            if (success) {
+                applySettings();
+            }
+            if (callback != null) {
+                callback.accept(success);
+            }
+        });
+    }
+
+    /**
+     * Applies the current settings to the sampler, the tab update task, the config watcher, the history store,
+     * the audit log, the lag spike detector and the metrics endpoint.
+     */
+    private void applySettings() {
+        PingSettings.Snapshot settings = PingSettings.getInstance().getSnapshot();
+
+        pingSampler.setWindowSize(settings.sampler().windowSize());
+        pingSampler.setSmoothingAlpha(settings.sampler().alpha());
+        permissionCache.setRefreshSeconds(settings.commands().permissionRefreshSeconds());
+        tabUpdateTask.start();
+        if (settings.tab().displayMode() != tabUpdateTask.getActiveMode()) {
+            getLogger().warning("Scoreboard teams are not supported on this server. Showing ping in the tab list names instead.");
+        } else if (settings.tab().displayMode() == PingSettings.DisplayMode.VIEWER) {
+            getLogger().warning("The viewer display mode gives players with pingplayer.viewping their own scoreboard, "
+                    + "so they no longer see the sidebar, objectives and teams of the main scoreboard. "
+                    + "Players another plugin gave a scoreboard keep it and do not see the tiers.");
+        }
+
+        if (settings.autoReload().enabled()) {
+            configWatcher.start();
+        } else {
+            configWatcher.stop();
+        }
+
+        historyStore.configure(settings);
+        if (settings.history().enabled()) {
+            historyStore.start();
+        } else {
+            historyStore.stop();
+        }
+
+        auditLog.configure(settings);
+        if (settings.audit().enabled()) {
+            auditLog.start();
+        } else {
+            auditLog.stop();
+        }
+
+        lagSpikeDetector.configure(settings);
+        if (settings.alerts().enabled()) {
+            lagSpikeDetector.start();
+        } else {
+            lagSpikeDetector.stop();
+        }
+
+        if (settings.metrics().enabled()) {
+            metricsExporter.start(settings.metrics().bindAddress(), settings.metrics().port());
+        } else {
+            metricsExporter.stop();
+        }
+    }
+
+    /**
+     * Gets the task that keeps the tab list up to date.
+     *
+     * @return the tab update task
+     */
+    public TabUpdateTask getTabUpdateTask() {
+        return tabUpdateTask;
+    }
+
+    /**
+     * Gets the cache of the last rendered tab list names.
+     *
+     * @return the tab render cache
+     */
+    public TabRenderCache getTabRenderCache() {
+        return tabRenderCache;
+    }
+
+    /**
+     * Gets the scoreboard teams of the latency tiers, used in the team display mode.
+     *
+     * @return the tier teams
+     */
+    public TierTeams getTierTeams() {
+        return tierTeams;
+    }
+
+    /**
+     * Gets the per-viewer scoreboard teams of the latency tiers, used in the viewer display mode.
+     *
+     * @return the viewer teams
+     */
+    public ViewerTeams getViewerTeams() {
+        return viewerTeams;
+    }
+
+    /**
+     * Gets the sampler that keeps the recent ping history of every online player.
+     *
+     * @return the ping sampler
+     */
+    public PingSampler getPingSampler() {
+        return pingSampler;
+    }
+
+    /**
+     * Gets the cache of the plugin's permissions for every online player.
+     *
+     * @return the permission cache
+     */
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
+    /**
+     * Gets the index of online player names used for tab completion.
+     *
+     * @return the player name index
+     */
+    public PlayerNameIndex getPlayerNameIndex() {
+        return playerNameIndex;
+    }
+
+    /**
+     * Gets the index of online players by IP address used by the /ip subcommands.
+     *
+     * @return the address index
+     */
+    public AddressIndex getAddressIndex() {
+        return addressIndex;
+    }
+
+    /**
+     * Gets the store that keeps the ping history on disk.
+     *
+     * @return the history store
+     */
+    public HistoryStore getHistoryStore() {
+        return historyStore;
+    }
+
+    /**
+     * Gets the audit log of ping and IP queries.
+     *
+     * @return the audit log
+     */
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    /**
+     * Gets the detector that reports lag spikes and sustained high latency to staff.
+     *
+     * @return the lag spike detector
+     */
+    public LagSpikeDetector getLagSpikeDetector() {
+        return lagSpikeDetector;
+    }
+
+    /**
+     * Gets the histogram of the current ping of all online players.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * Gets the profiler that measures the plugin's own cost.
+     *
+     * @return the profiler
+     */
+    public Profiler getProfiler() {
+        return profiler;
     }
 
     /**
@@ -2,6 +2,8 @@ package me.honeyberries.pingPlayer;
 
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -9,8 +11,14 @@ import org.bukkit.command.TabExecutor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles the /pingplayer command, providing administrative functions such as configuration reload and help.
@@ -19,6 +27,18 @@ public class PingPlayerCommand implements CommandExecutor, TabExecutor {
 
     private final PingPlayer plugin = PingPlayer.getInstance();
 
+    // The subcommands suggested by tab completion, immutable so they can be completed asynchronously
+    private static final List<String> SUBCOMMANDS = List.of("reload", "updates", "history", "stats", "profile", "help");
+
+    // The time ranges suggested for /pingplayer history
+    private static final List<String> HISTORY_RANGES = List.of("15m", "1h", "6h", "1d", "7d");
+
+    // The number of time buckets a history report is split into
+    private static final int HISTORY_BUCKETS = 6;
+
+    // The number of worst players listed by /pingplayer stats
+    private static final int WORST_PLAYERS = 5;
+
     /**
      * Executes the /pingplayer command.
      * Supports subcommands like "reload" to reload the configuration, or "help" for command usage information.
@@ -31,6 +51,25 @@ public class PingPlayerCommand implements CommandExecutor, TabExecutor {
      */
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        long start = System.nanoTime();
+        long allocated = plugin.getProfiler().allocatedBytes();
+        try {
+            return execute(sender, command, label, args);
+        } finally {
+            plugin.getProfiler().record(Profiler.Section.COMMAND_PINGPLAYER, start, allocated, 1);
+        }
+    }
+
+    /**
+     * Runs the /pingplayer command. Called by {@link #onCommand}, which records its cost in the profiler.
+     *
+     * @param sender  the sender of the command
+     * @param command the command being executed
+     * @param label   the alias used for the command
+     * @param args    the command arguments
+     * @return true if the command was successfully executed, false otherwise
+     */
+    private boolean execute(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
 
         if (!(sender.hasPermission("pingplayer.settings"))) {
             sender.sendMessage(Component.text("You don't have permission to use this command.", NamedTextColor.RED));
@@ -47,6 +86,18 @@ public class PingPlayerCommand implements CommandExecutor, TabExecutor {
             case "reload":
                 handleReloadCommand(sender);
                 break;
+            case "updates":
+                handleUpdatesCommand(sender);
+                break;
+            case "history":
+                handleHistoryCommand(sender, args);
+                break;
+            case "stats":
+                handleStatsCommand(sender);
+                break;
+            case "profile":
+                handleProfileCommand(sender);
+                break;
             case "help":
             default:
                 sendHelpMessage(sender);
@@ -57,14 +108,274 @@ public class PingPlayerCommand implements CommandExecutor, TabExecutor {
 
     /**
      * Handles the "reload" subcommand of /pingplayer.
-     * Reloads the configuration and sends a success or permission error message.
+     * Reloads the configuration in the background and sends a success or error message once it is done.
      *
      * @param sender the sender of the command
      */
     private void handleReloadCommand(CommandSender sender) {
         sender.hasPermission("pingplayer.settings");
-        PingSettings.getInstance().load();
-        sender.sendMessage(Component.text("Configuration reloaded successfully!", NamedTextColor.GREEN));
+        plugin.reloadSettings(success -> {
+            if (success) {
+                sender.sendMessage(Component.text("Configuration reloaded successfully!", NamedTextColor.GREEN));
+            } else {
+                sender.sendMessage(Component.text("Could not reload the configuration. Check the console for details.", NamedTextColor.RED));
+            }
+        });
+    }
+
+    /**
+     * Handles the "updates" subcommand of /pingplayer.
+     * Shows how many tab list updates were sent and how many were skipped because nothing changed,
+     * and in the team and viewer display modes how often players changed teams and what was sent to viewers.
+     *
+     * @param sender the sender of the command
+     */
+    private void handleUpdatesCommand(CommandSender sender) {
+        TabRenderCache renderCache = plugin.getTabRenderCache();
+        sender.sendMessage(Component.text("----- Tab List Updates -----", NamedTextColor.GOLD));
+        sender.sendMessage(Component.text("Tracked players: ", NamedTextColor.GOLD)
+                .append(Component.text(renderCache.size(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Updates sent: ", NamedTextColor.GOLD)
+                .append(Component.text(renderCache.getSentUpdates(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Updates skipped (unchanged): ", NamedTextColor.GOLD)
+                .append(Component.text(renderCache.getSkippedUpdates(), NamedTextColor.AQUA)));
+
+        TierTeams tierTeams = plugin.getTierTeams();
+        sender.sendMessage(Component.text("Display mode: ", NamedTextColor.GOLD)
+                .append(Component.text(plugin.getTabUpdateTask().getActiveMode().getKey(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Team changes: ", NamedTextColor.GOLD)
+                .append(Component.text(tierTeams.getChanges(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Team updates skipped (same tier): ", NamedTextColor.GOLD)
+                .append(Component.text(tierTeams.getSkippedUpdates(), NamedTextColor.AQUA)));
+
+        ViewerTeams viewerTeams = plugin.getViewerTeams();
+        sender.sendMessage(Component.text("Viewers: ", NamedTextColor.GOLD)
+                .append(Component.text(viewerTeams.getViewerCount(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Viewer tier changes: ", NamedTextColor.GOLD)
+                .append(Component.text(viewerTeams.getChanges(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Viewer batches sent: ", NamedTextColor.GOLD)
+                .append(Component.text(viewerTeams.getBatches() + " (" + viewerTeams.getSentEntries() + " entries)", NamedTextColor.AQUA)));
+    }
+
+    /**
+     * Handles the "history" subcommand of /pingplayer.
+     * Reads the stored ping of a player over a time range in the background and sends a summary once it is done.
+     *
+     * @param sender the sender of the command
+     * @param args   the arguments: "history", the player name and an optional range like 30m, 2h or 1d
+     */
+    private void handleHistoryCommand(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(Component.text("Usage: /pingplayer history <player> [range]", NamedTextColor.RED));
+            return;
+        }
+
+        HistoryStore historyStore = plugin.getHistoryStore();
+        if (!historyStore.isRunning()) {
+            sender.sendMessage(Component.text("The ping history is not being stored. Enable history-store in config.yml.", NamedTextColor.RED));
+            return;
+        }
+
+        String range = args.length >= 3 ? args[2] : "1h";
+        long rangeMillis = parseRange(range);
+        if (rangeMillis <= 0) {
+            sender.sendMessage(Component.text("Invalid time range: " + range + ". Use a number followed by s, m, h or d, like 30m or 2h.", NamedTextColor.RED));
+            return;
+        }
+
+        // Look up the player without blocking on a profile lookup, so players that left can be queried too
+        OfflinePlayer target = Bukkit.getOfflinePlayerIfCached(args[1]);
+        if (target == null) {
+            sender.sendMessage(Component.text("Player not found.", NamedTextColor.RED));
+            return;
+        }
+        String targetName = target.getName() != null ? target.getName() : args[1];
+
+        long to = System.currentTimeMillis();
+        long from = to - rangeMillis;
+        // Read the history files on the I/O executor, then answer on the main thread
+        Scheduler.supplyAsync(() -> {
+            try {
+                return historyStore.query(target.getUniqueId(), from, to, HISTORY_BUCKETS);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((report, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                Scheduler.runTask(() -> sender.sendMessage(Component.text("Could not read the ping history. Check the console for details.", NamedTextColor.RED)));
+                return;
+            }
+            Scheduler.runTask(() -> sendHistoryReport(sender, targetName, range, rangeMillis, report));
+        });
+    }
+
+    /**
+     * Sends the stored ping of a player over a time range to the command sender.
+     *
+     * @param sender      the sender of the command
+     * @param targetName  the name of the player
+     * @param range       the time range as entered
+     * @param rangeMillis the time range in milliseconds
+     * @param report      the history report, or null if there are no samples
+     */
+    private void sendHistoryReport(CommandSender sender, String targetName, String range, long rangeMillis, HistoryStore.HistoryReport report) {
+        if (report == null) {
+            sender.sendMessage(Component.text("No ping history of " + targetName + " in the last " + range + ".", NamedTextColor.YELLOW));
+            return;
+        }
+
+        LatencyClassifier classifier = PingSettings.getInstance().getClassifier();
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(rangeMillis > TimeUnit.DAYS.toMillis(1) ? "MM-dd HH:mm" : "HH:mm")
+                .withZone(ZoneId.systemDefault());
+
+        sender.sendMessage(Component.text("----- Ping History: " + targetName + " (last " + range + ") -----", NamedTextColor.GOLD));
+        sender.sendMessage(Component.text("Samples: ", NamedTextColor.GOLD)
+                .append(Component.text(report.samples(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("Min / Avg / Max: ", NamedTextColor.GOLD)
+                .append(Component.text(report.min() + " / " + Math.round(report.average()) + " / " + report.max() + " ms", NamedTextColor.AQUA)));
+
+        // Show one line per time bucket, colored by the latency tier of the average and the highest ping
+        for (HistoryStore.HistoryBucket bucket : report.buckets()) {
+            Component line = Component.text(formatter.format(Instant.ofEpochMilli(bucket.start())) + "  ", NamedTextColor.GRAY);
+            if (bucket.samples() == 0) {
+                line = line.append(Component.text("no data", NamedTextColor.DARK_GRAY));
+            } else {
+                int average = (int) Math.round(bucket.average());
+                line = line.append(Component.text("avg ", NamedTextColor.GOLD))
+                        .append(Component.text(average + " ms", classifier.getTier(classifier.classify(average)).color()))
+                        .append(Component.text(", max ", NamedTextColor.GOLD))
+                        .append(Component.text(bucket.max() + " ms", classifier.getTier(classifier.classify(bucket.max())).color()));
+            }
+            sender.sendMessage(line);
+        }
+    }
+
+    /**
+     * Handles the "stats" subcommand of /pingplayer.
+     * Shows the latency percentiles of all online players, the number of players per latency tier
+     * and the players with the highest ping, all read from the latency histogram.
+     *
+     * @param sender the sender of the command
+     */
+    private void handleStatsCommand(CommandSender sender) {
+        LatencyHistogram.Summary summary = plugin.getLatencyHistogram().summary(WORST_PLAYERS);
+        if (summary.players() == 0 || summary.classifier() == null) {
+            sender.sendMessage(Component.text("No player ping has been sampled yet.", NamedTextColor.YELLOW));
+            return;
+        }
+
+        sender.sendMessage(Component.text("----- Server Latency -----", NamedTextColor.GOLD));
+        sender.sendMessage(Component.text("Players: ", NamedTextColor.GOLD)
+                .append(Component.text(summary.players(), NamedTextColor.AQUA)));
+        sender.sendMessage(Component.text("p50 / p90 / p99 / max: ", NamedTextColor.GOLD)
+                .append(Component.text(summary.p50() + " / " + summary.p90() + " / " + summary.p99() + " / " + summary.max() + " ms", NamedTextColor.AQUA)));
+
+        // Show the number of players in every latency tier
+        LatencyClassifier classifier = summary.classifier();
+        sender.sendMessage(Component.text("Players per tier:", NamedTextColor.GOLD));
+        for (int i = 0; i < classifier.getTierCount(); i++) {
+            LatencyClassifier.Tier tier = classifier.getTier(i);
+            sender.sendMessage(Component.text("  " + tier.label() + ": ", tier.color())
+                    .append(Component.text(summary.tierCounts()[i], NamedTextColor.AQUA)));
+        }
+
+        // Show the players with the highest ping
+        sender.sendMessage(Component.text("Highest ping:", NamedTextColor.GOLD));
+        List<LatencyHistogram.PlayerPing> worst = summary.worst();
+        for (int i = 0; i < worst.size(); i++) {
+            LatencyHistogram.PlayerPing entry = worst.get(i);
+            sender.sendMessage(Component.text("  " + (i + 1) + ". " + entry.name() + " - ", NamedTextColor.GOLD)
+                    .append(Component.text(entry.ping() + " ms", classifier.getTier(classifier.classify(entry.ping())).color())));
+        }
+    }
+
+    /**
+     * Handles the "profile" subcommand of /pingplayer.
+     * Shows how much time the plugin's tasks and commands took during the last minute.
+     *
+     * @param sender the sender of the command
+     */
+    private void handleProfileCommand(CommandSender sender) {
+        Profiler profiler = plugin.getProfiler();
+        sender.sendMessage(Component.text("----- PingPlayer Profile (last " + profiler.stats(Profiler.Section.TAB_UPDATE).seconds() + "s) -----", NamedTextColor.GOLD));
+
+        for (Profiler.Section section : Profiler.Section.values()) {
+            Profiler.Stats stats = profiler.stats(section);
+            if (stats.invocations() == 0) {
+                continue;
+            }
+
+            sender.sendMessage(Component.text(section.getDisplayName() + ": ", NamedTextColor.GOLD)
+                    .append(Component.text(stats.invocations() + " runs, mean " + formatMillis(stats.meanNanos())
+                            + ", max " + formatMillis(stats.maxNanos()) + ", " + formatMillis(stats.nanosPerTick()) + " per tick", NamedTextColor.AQUA)));
+
+            // Show the players per run and the allocation estimate where available
+            String details = "";
+            if (section.countsPlayers()) {
+                details += String.format(Locale.ROOT, "%.1f players per run", stats.itemsPerRun());
+            }
+            if (profiler.isAllocationSupported()) {
+                details += (details.isEmpty() ? "" : ", ") + "~" + formatBytes(stats.allocatedPerRun()) + " allocated per run";
+            }
+            if (!details.isEmpty()) {
+                sender.sendMessage(Component.text("  " + details, NamedTextColor.GRAY));
+            }
+        }
+    }
+
+    /**
+     * Formats a duration in nanoseconds as milliseconds.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the duration, like "0.042 ms"
+     */
+    private static String formatMillis(double nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1_000_000.0);
+    }
+
+    /**
+     * Formats a number of bytes with a binary unit.
+     *
+     * @param bytes the number of bytes
+     * @return the size, like "3.2 KB"
+     */
+    private static String formatBytes(double bytes) {
+        if (bytes < 1024) {
+            return String.format(Locale.ROOT, "%.0f B", bytes);
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024);
+        }
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024 * 1024));
+    }
+
+    /**
+     * Parses a time range like 30s, 15m, 2h or 7d.
+     *
+     * @param range the time range
+     * @return the time range in milliseconds, or -1 if it is invalid
+     */
+    private static long parseRange(String range) {
+        if (range.length() < 2) {
+            return -1;
+        }
+
+        long amount;
+        try {
+            amount = Long.parseLong(range.substring(0, range.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        TimeUnit unit = switch (Character.toLowerCase(range.charAt(range.length() - 1))) {
+            case 's' -> TimeUnit.SECONDS;
+            case 'm' -> TimeUnit.MINUTES;
+            case 'h' -> TimeUnit.HOURS;
+            case 'd' -> TimeUnit.DAYS;
+            default -> null;
+        };
+        return unit == null || amount <= 0 ? -1 : unit.toMillis(amount);
     }
 
     /**
@@ -77,13 +388,21 @@ public class PingPlayerCommand implements CommandExecutor, TabExecutor {
         sender.sendMessage(Component.text("----- PingPlayer Help -----", NamedTextColor.GOLD));
         sender.sendMessage(Component.text("/pingplayer reload", NamedTextColor.AQUA)
                 .append(Component.text(" - Reloads the plugin configuration.", NamedTextColor.GOLD)));
+        sender.sendMessage(Component.text("/pingplayer updates", NamedTextColor.AQUA)
+                .append(Component.text(" - Shows how many tab list updates were sent and skipped.", NamedTextColor.GOLD)));
+        sender.sendMessage(Component.text("/pingplayer history <player> [range]", NamedTextColor.AQUA)
+                .append(Component.text(" - Shows the stored ping of a player, like over the last 2h.", NamedTextColor.GOLD)));
+        sender.sendMessage(Component.text("/pingplayer stats", NamedTextColor.AQUA)
+                .append(Component.text(" - Shows the latency of all online players.", NamedTextColor.GOLD)));
+        sender.sendMessage(Component.text("/pingplayer profile", NamedTextColor.AQUA)
+                .append(Component.text(" - Shows how much server time the plugin used in the last minute.", NamedTextColor.GOLD)));
         sender.sendMessage(Component.text("/pingplayer help", NamedTextColor.AQUA)
                 .append(Component.text(" - Displays this help message.", NamedTextColor.GOLD)));
     }
 
     /**
      * Provides tab completion for the /pingplayer command.
-     * Suggests "reload" and "help" as subcommands.
+     * Suggests the subcommands, and player names and time ranges for "history".
      *
      * @param commandSender the sender of the command
      * @param command       the command being executed
@@ -94,10 +413,22 @@ public class PingPlayerCommand implements CommandExecutor, TabExecutor {
     @Override
     public @Nullable List<String> onTabComplete(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String s, @NotNull String[] args) {
         if (args.length == 1) {
-            return Stream.of("reload", "help")
-                    .filter(option -> option.toLowerCase().startsWith(args[0].toLowerCase()))
+            return SUBCOMMANDS.stream()
+                    .filter(option -> option.toLowerCase(Locale.ROOT).startsWith(args[0].toLowerCase(Locale.ROOT)))
                     .toList();
         }
+
+        // Suggest player names and time ranges for the history subcommand
+        if (args[0].equalsIgnoreCase("history")) {
+            if (args.length == 2) {
+                return plugin.getPlayerNameIndex().complete(args[1].toLowerCase(Locale.ROOT), PingSettings.getInstance().getCompletionLimit());
+            }
+            if (args.length == 3) {
+                return HISTORY_RANGES.stream()
+                        .filter(option -> option.startsWith(args[2].toLowerCase(Locale.ROOT)))
+                        .toList();
+            }
+        }
         return List.of();
     }
 }
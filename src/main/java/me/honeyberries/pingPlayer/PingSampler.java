@@ -0,0 +1,84 @@
+package me.honeyberries.pingPlayer;
+
+import org.bukkit.entity.Player;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link PingHistory} for every online player.
+ * Histories are created when a player joins, filled by the tab update task and released when the player quits.
+ */
+public class PingSampler {
+
+    private final Map<UUID, PingHistory> histories = new ConcurrentHashMap<>();
+    private volatile int windowSize = 60;
+    private volatile double smoothingAlpha = 0.3;
+
+    /**
+     * Starts keeping a history for a player. Called when the player joins.
+     *
+     * @param player the player to track
+     */
+    public void track(Player player) {
+        histories.computeIfAbsent(player.getUniqueId(), id -> new PingHistory(windowSize));
+    }
+
+    /**
+     * Releases the history of a player. Called when the player quits.
+     *
+     * @param player the player to forget
+     */
+    public void untrack(Player player) {
+        histories.remove(player.getUniqueId());
+    }
+
+    /**
+     * Changes the number of samples kept per player.
+     * Histories with a different size are replaced by empty ones, as their samples cannot be carried over.
+     *
+     * @param windowSize the new number of samples per player
+     */
+    public void setWindowSize(int windowSize) {
+        if (this.windowSize == windowSize) {
+            return;
+        }
+        this.windowSize = windowSize;
+        histories.replaceAll((id, history) -> new PingHistory(windowSize));
+    }
+
+    /**
+     * Changes the weight of new samples in the smoothed ping.
+     *
+     * @param smoothingAlpha the weight between 0 (never changes) and 1 (no smoothing)
+     */
+    public void setSmoothingAlpha(double smoothingAlpha) {
+        this.smoothingAlpha = smoothingAlpha;
+    }
+
+    /**
+     * Records a ping sample for a player.
+     *
+     * @param player the player
+     * @param ping   the ping sample in milliseconds
+     * @return the player's smoothed ping after this sample
+     */
+    public int record(Player player, int ping) {
+        PingHistory history = histories.get(player.getUniqueId());
+        if (history == null) {
+            history = histories.computeIfAbsent(player.getUniqueId(), id -> new PingHistory(windowSize));
+        }
+        return history.record(ping, smoothingAlpha);
+    }
+
+    /**
+     * Gets the rolling statistics of a player.
+     *
+     * @param player the player
+     * @return the player's statistics, or null if no samples were recorded yet
+     */
+    public PingHistory.PingStats getStats(Player player) {
+        PingHistory history = histories.get(player.getUniqueId());
+        return history == null ? null : history.stats();
+    }
+}
@@ -1,17 +1,31 @@
 package me.honeyberries.pingPlayer;
 
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * Manages the configuration settings for the PingPlayer plugin.
  * This class follows the Singleton pattern to ensure only a single instance is used throughout the plugin.
+ * The loaded values are published as an immutable {@link Snapshot}, which is swapped in as a whole on reload,
+ * so readers on any thread always see a complete and consistent configuration.
  */
 public class PingSettings {
 
@@ -23,13 +37,46 @@ public class PingSettings {
 
     // Default values for configuration settings
     private static final List<Integer> DEFAULT_THRESHOLDS = Arrays.asList(50, 100, 200, 300);
+    private static final int DEFAULT_TAB_UPDATE_INTERVAL = 20;
+    private static final int DEFAULT_TAB_UPDATE_SHARDS = 1;
+    private static final int DEFAULT_HISTORY_WINDOW_SIZE = 60;
+    private static final double DEFAULT_SMOOTHING_ALPHA = 0.3;
+    private static final int DEFAULT_SMOOTHING_HYSTERESIS = 10;
+    private static final int DEFAULT_AUTO_RELOAD_DEBOUNCE = 500;
+    private static final int DEFAULT_PERMISSION_REFRESH_SECONDS = 30;
+    private static final int DEFAULT_COMPLETION_LIMIT = 50;
+    private static final int DEFAULT_HISTORY_STORE_SAMPLE_SECONDS = 10;
+    private static final int DEFAULT_HISTORY_STORE_SEGMENT_SIZE_KB = 1024;
+    private static final int DEFAULT_HISTORY_STORE_SEGMENT_MINUTES = 60;
+    private static final int DEFAULT_HISTORY_STORE_RETENTION_DAYS = 7;
+    private static final String DEFAULT_METRICS_BIND_ADDRESS = "127.0.0.1";
+    private static final int DEFAULT_METRICS_PORT = 9940;
+    private static final int DEFAULT_AUDIT_LOG_QUEUE_CAPACITY = 4096;
+    private static final int DEFAULT_AUDIT_LOG_FILE_SIZE_KB = 1024;
+    private static final int DEFAULT_AUDIT_LOG_ROTATE_MINUTES = 1440;
+    private static final int DEFAULT_AUDIT_LOG_MAX_FILES = 10;
+    private static final int DEFAULT_LAG_ALERTS_SPIKE_DELTA = 150;
+    private static final int DEFAULT_LAG_ALERTS_BASELINE_SECONDS = 60;
+    private static final int DEFAULT_LAG_ALERTS_SUSTAINED_PING = 300;
+    private static final int DEFAULT_LAG_ALERTS_SUSTAINED_SECONDS = 30;
+    private static final int DEFAULT_LAG_ALERTS_WINDOW_SECONDS = 5;
+    private static final int DEFAULT_LAG_ALERTS_PLAYER_COOLDOWN_SECONDS = 60;
+    private static final int DEFAULT_LAG_ALERTS_MAX_PER_MINUTE = 6;
+    private static final int DEFAULT_LAG_ALERTS_SERVER_WIDE_PERCENT = 25;
+    private static final int DEFAULT_LAG_ALERTS_SERVER_WIDE_MIN_PLAYERS = 5;
 
     // Configuration file and settings
     private File configFile;
     private YamlConfiguration yamlConfig;
-    private List<Integer> pingThresholds;
-    private Boolean showPingOnTab;
+    private ConfigPersister persister;
+    private volatile Snapshot snapshot;
 
+    // The file contents as last loaded or saved by the plugin, used to ignore our own writes
+    private volatile String lastKnownContents;
+
+    // How long reloading and saving config.yml took, for the metrics endpoint
+    private final DurationCounter reloadDurations = new DurationCounter();
+    private final DurationCounter saveDurations = new DurationCounter();
 
     /**
      * Private constructor to enforce Singleton pattern.
@@ -47,52 +94,279 @@ public class PingSettings {
     }
 
     /**
-     * Loads the configuration from the config.yml file.
+     * Loads the configuration from the config.yml file on the calling thread.
      * If the config file does not exist, it is created from the plugin's resource.
+     * If it cannot be read, the default values are used.
+     * Values that were missing or invalid are written back in the background.
      */
     public void load() {
-        configFile = new File(PingPlayer.getInstance().getDataFolder(), "config.yml");
+        if (!reload() && snapshot == null) {
+            plugin.getLogger().warning("Using default configuration values.");
+            publish(new YamlConfiguration(), null);
+        }
+    }
+
+    /**
+     * Reloads the configuration from the config.yml file off the main thread.
+     * The file is read, parsed and validated in the background, then published in a single swap.
+     * If the file cannot be read, the current configuration stays in place.
+     *
+     * @param callback called on the main thread with true if the configuration was reloaded
+     */
+    public void reloadAsync(@NotNull Consumer<Boolean> callback) {
+        Scheduler.supplyAsync(this::reload).whenComplete((success, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+            Scheduler.runTask(() -> callback.accept(error == null && success));
+        });
+    }
+
+    /**
+     * Reads, parses and publishes the configuration file.
+     *
+     * @return true if the configuration was reloaded, false if the file could not be read or parsed
+     */
+    private boolean reload() {
+        long start = System.nanoTime();
+        File file = new File(plugin.getDataFolder(), "config.yml");
 
         // Check if the configuration file exists, if not, create it from the resource
-        if (!configFile.exists()) {
-            PingPlayer.getInstance().saveResource("config.yml", false);
+        if (!file.exists()) {
+            plugin.saveResource("config.yml", false);
         }
 
-        // Load the configuration file
-        yamlConfig = YamlConfiguration.loadConfiguration(configFile);
-        yamlConfig.options().parseComments(true); // Enable comment parsing in the YAML file
+        // Read and parse the configuration file
+        String contents;
+        YamlConfiguration config = new YamlConfiguration();
+        config.options().parseComments(true); // Enable comment parsing in the YAML file
+        try {
+            contents = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+            config.loadFromString(contents);
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().severe("Could not load config.yml: " + e.getMessage());
+            return false;
+        }
 
-        // Load specific configuration values
-        loadPingThresholds();
+        synchronized (this) {
+            configFile = file;
+            if (persister == null) {
+                persister = new ConfigPersister(configFile, this::saveToString, saveDurations);
+            }
+            publish(config, contents);
+        }
+        reloadDurations.record(System.nanoTime() - start);
+        return true;
+    }
 
-        //Load value for show-ping-on-tab
+    /**
+     * Builds a snapshot from a parsed configuration, publishes it and writes back missing values.
+     *
+     * @param config   the parsed configuration
+     * @param contents the file contents the configuration was parsed from, or null if there is no file
+     */
+    private synchronized void publish(YamlConfiguration config, String contents) {
+        Snapshot loaded = parse(config, plugin.getLogger());
 
+        yamlConfig = config;
+        lastKnownContents = contents;
+        snapshot = loaded;
+
+        // Log the loaded configuration
+        logConfiguration(loaded);
+
+        // Save the configuration file to ensure the values in the config are up-to-date
+        if (persister != null) {
+            syncConfiguration(loaded);
+        }
+    }
+
+    /**
+     * Parses and validates every setting of a configuration.
+     * Invalid values are replaced by their defaults, with a warning.
+     * Besides loading config.yml, this is used by the load simulator to parse the bundled configuration.
+     *
+     * @param config the parsed configuration
+     * @param logger the logger invalid values are reported to
+     * @return the settings snapshot
+     */
+    public Snapshot parse(@NotNull YamlConfiguration config, @NotNull Logger logger) {
+        // Load specific configuration values
+        List<Integer> pingThresholds = loadPingThresholds(config, logger);
+
+        // Load the latency tiers. If a "tiers" list is configured, it is used as is.
+        // Otherwise, the default five tiers are built from the ping thresholds.
+        boolean customTiers = config.isSet("tiers");
+        LatencyClassifier classifier;
         try {
-            showPingOnTab = yamlConfig.getBoolean("show-ping-on-tab");
+            classifier = compileClassifier(customTiers ? parseTiers(config) : LatencyClassifier.defaultTiers(pingThresholds));
         } catch (Exception e) {
-            PingPlayer.getInstance().getLogger().warning("Error loading show-ping-on-tab value! Using default value of false.");
-            showPingOnTab = false;
+            logger.warning("Error loading latency tiers (" + e.getMessage() + ")! Using default values.");
+            customTiers = false;
+            pingThresholds = DEFAULT_THRESHOLDS;
+            classifier = compileClassifier(LatencyClassifier.defaultTiers(DEFAULT_THRESHOLDS));
         }
 
-        // Log the loaded configuration
-        logConfiguration();
+        //Load value for show-ping-on-tab
+        boolean showPingOnTab = config.getBoolean("show-ping-on-tab");
+
+        // Load the tab update cadence.
+        // The interval must be at least one tick, and the shard count must be between one and the interval,
+        // so that every player is still updated once per interval.
+        int tabUpdateInterval = readInt(config, logger, "tab-update.interval-ticks", 1, Integer.MAX_VALUE, DEFAULT_TAB_UPDATE_INTERVAL);
+
+        int tabUpdateShards = config.getInt("tab-update.shards", DEFAULT_TAB_UPDATE_SHARDS);
+        if (tabUpdateShards < 1 || tabUpdateShards > tabUpdateInterval) {
+            logger.warning("tab-update.shards must be between 1 and the update interval! Using " + Math.min(Math.max(tabUpdateShards, 1), tabUpdateInterval) + ".");
+            tabUpdateShards = Math.min(Math.max(tabUpdateShards, 1), tabUpdateInterval);
+        }
+
+        // Load the tab list display mode
+        String displayModeName = config.getString("tab-update.display-mode", "name");
+        DisplayMode displayMode = DisplayMode.parse(displayModeName);
+        if (displayMode == null) {
+            logger.warning("tab-update.display-mode must be name, team or viewer! Using default value of name.");
+            displayMode = DisplayMode.NAME;
+        }
+
+        // Load the number of ping samples kept per player
+        int historyWindowSize = readInt(config, logger, "ping-history.window-size", 2, Integer.MAX_VALUE, DEFAULT_HISTORY_WINDOW_SIZE);
+
+        // Load the smoothed display settings.
+        // The smoothing factor must be greater than 0 and at most 1, and the hysteresis margin must not be negative.
+        boolean smoothingEnabled = config.getBoolean("smoothing.enabled", false);
+        double smoothingAlpha = readDouble(config, logger, "smoothing.alpha", 0, 1, DEFAULT_SMOOTHING_ALPHA);
+        int smoothingHysteresis = readInt(config, logger, "smoothing.hysteresis", 0, Integer.MAX_VALUE, DEFAULT_SMOOTHING_HYSTERESIS);
+
+        // Load the config file watcher settings
+        boolean autoReload = config.getBoolean("auto-reload.enabled", false);
+        int autoReloadDebounce = readInt(config, logger, "auto-reload.debounce-ms", 0, Integer.MAX_VALUE, DEFAULT_AUTO_RELOAD_DEBOUNCE);
+
+        // Load how long cached permissions are trusted and the maximum number of tab completion suggestions
+        int permissionRefreshSeconds = readInt(config, logger, "permission-cache.refresh-seconds", 0, Integer.MAX_VALUE, DEFAULT_PERMISSION_REFRESH_SECONDS);
+        int completionLimit = readInt(config, logger, "tab-completion.max-results", 1, Integer.MAX_VALUE, DEFAULT_COMPLETION_LIMIT);
+
+        // Load the persistent ping history settings
+        boolean historyStoreEnabled = config.getBoolean("history-store.enabled", false);
+        int historyStoreSampleSeconds = readInt(config, logger, "history-store.sample-interval-seconds", 1, Integer.MAX_VALUE, DEFAULT_HISTORY_STORE_SAMPLE_SECONDS);
+        int historyStoreSegmentSizeKb = readInt(config, logger, "history-store.segment-size-kb", 1, Integer.MAX_VALUE, DEFAULT_HISTORY_STORE_SEGMENT_SIZE_KB);
+        int historyStoreSegmentMinutes = readInt(config, logger, "history-store.segment-minutes", 1, Integer.MAX_VALUE, DEFAULT_HISTORY_STORE_SEGMENT_MINUTES);
+        int historyStoreRetentionDays = readInt(config, logger, "history-store.retention-days", 1, Integer.MAX_VALUE, DEFAULT_HISTORY_STORE_RETENTION_DAYS);
+
+        // Load the metrics endpoint settings
+        boolean metricsEnabled = config.getBoolean("metrics.enabled", false);
+        String metricsBindAddress = config.getString("metrics.bind-address", DEFAULT_METRICS_BIND_ADDRESS);
+        int metricsPort = readInt(config, logger, "metrics.port", 1, 65535, DEFAULT_METRICS_PORT);
+
+        // Load the audit log settings
+        boolean auditLogEnabled = config.getBoolean("audit-log.enabled", true);
+        int auditLogQueueCapacity = readInt(config, logger, "audit-log.queue-capacity", 1, Integer.MAX_VALUE, DEFAULT_AUDIT_LOG_QUEUE_CAPACITY);
+        String auditLogWhenFull = config.getString("audit-log.when-full", "drop");
+        if (!auditLogWhenFull.equalsIgnoreCase("drop") && !auditLogWhenFull.equalsIgnoreCase("block")) {
+            logger.warning("audit-log.when-full must be drop or block! Using default value of drop.");
+            auditLogWhenFull = "drop";
+        }
+        boolean auditLogBlockWhenFull = auditLogWhenFull.equalsIgnoreCase("block");
+        int auditLogFileSizeKb = readInt(config, logger, "audit-log.max-file-size-kb", 1, Integer.MAX_VALUE, DEFAULT_AUDIT_LOG_FILE_SIZE_KB);
+        int auditLogRotateMinutes = readInt(config, logger, "audit-log.rotate-minutes", 1, Integer.MAX_VALUE, DEFAULT_AUDIT_LOG_ROTATE_MINUTES);
+        int auditLogMaxFiles = readInt(config, logger, "audit-log.max-files", 1, Integer.MAX_VALUE, DEFAULT_AUDIT_LOG_MAX_FILES);
+
+        // Load the lag spike alert settings
+        boolean lagAlertsEnabled = config.getBoolean("lag-alerts.enabled", false);
+        int lagAlertsSpikeDelta = readInt(config, logger, "lag-alerts.spike-delta-ms", 1, Integer.MAX_VALUE, DEFAULT_LAG_ALERTS_SPIKE_DELTA);
+        int lagAlertsBaselineSeconds = readInt(config, logger, "lag-alerts.baseline-seconds", 1, Integer.MAX_VALUE, DEFAULT_LAG_ALERTS_BASELINE_SECONDS);
+        int lagAlertsSustainedPing = readInt(config, logger, "lag-alerts.sustained-ping-ms", 1, Integer.MAX_VALUE, DEFAULT_LAG_ALERTS_SUSTAINED_PING);
+        int lagAlertsSustainedSeconds = readInt(config, logger, "lag-alerts.sustained-seconds", 1, Integer.MAX_VALUE, DEFAULT_LAG_ALERTS_SUSTAINED_SECONDS);
+        int lagAlertsWindowSeconds = readInt(config, logger, "lag-alerts.window-seconds", 1, Integer.MAX_VALUE, DEFAULT_LAG_ALERTS_WINDOW_SECONDS);
+        int lagAlertsPlayerCooldownSeconds = readInt(config, logger, "lag-alerts.player-cooldown-seconds", 0, Integer.MAX_VALUE, DEFAULT_LAG_ALERTS_PLAYER_COOLDOWN_SECONDS);
+        int lagAlertsMaxPerMinute = readInt(config, logger, "lag-alerts.max-alerts-per-minute", 1, Integer.MAX_VALUE, DEFAULT_LAG_ALERTS_MAX_PER_MINUTE);
+        int lagAlertsServerWidePercent = readInt(config, logger, "lag-alerts.server-wide-percent", 1, 100, DEFAULT_LAG_ALERTS_SERVER_WIDE_PERCENT);
+        int lagAlertsServerWideMinPlayers = readInt(config, logger, "lag-alerts.server-wide-min-players", 1, Integer.MAX_VALUE, DEFAULT_LAG_ALERTS_SERVER_WIDE_MIN_PLAYERS);
+
+        return new Snapshot(
+                new TabSettings(showPingOnTab, tabUpdateInterval, tabUpdateShards, displayMode),
+                new TierSettings(pingThresholds, customTiers, classifier),
+                new SamplerSettings(historyWindowSize, smoothingEnabled, smoothingAlpha, smoothingHysteresis),
+                new AutoReloadSettings(autoReload, autoReloadDebounce),
+                new CommandSettings(permissionRefreshSeconds, completionLimit),
+                new HistorySettings(historyStoreEnabled, historyStoreSampleSeconds, historyStoreSegmentSizeKb,
+                        historyStoreSegmentMinutes, historyStoreRetentionDays),
+                new MetricsSettings(metricsEnabled, metricsBindAddress, metricsPort),
+                new AuditSettings(auditLogEnabled, auditLogQueueCapacity, auditLogBlockWhenFull, auditLogFileSizeKb,
+                        auditLogRotateMinutes, auditLogMaxFiles),
+                new AlertSettings(lagAlertsEnabled, lagAlertsSpikeDelta, lagAlertsBaselineSeconds,
+                        lagAlertsSustainedPing, lagAlertsSustainedSeconds, lagAlertsWindowSeconds,
+                        lagAlertsPlayerCooldownSeconds, lagAlertsMaxPerMinute, lagAlertsServerWidePercent,
+                        lagAlertsServerWideMinPlayers));
+    }
 
-        // Save the configuration file to ensure in the config are up-to-date
-        syncConfiguration();
+    /**
+     * Reads an integer setting that must lie within a range.
+     * A value outside the range is replaced by the default, with a warning.
+     *
+     * @param config       the parsed configuration
+     * @param logger       the logger an invalid value is reported to
+     * @param key          the path of the setting
+     * @param min          the lowest valid value
+     * @param max          the highest valid value, or {@link Integer#MAX_VALUE} for no upper bound
+     * @param defaultValue the value used if the setting is missing or invalid
+     * @return the value of the setting
+     */
+    private static int readInt(YamlConfiguration config, Logger logger, String key, int min, int max, int defaultValue) {
+        int value = config.getInt(key, defaultValue);
+        if (value >= min && value <= max) {
+            return value;
+        }
+
+        String range;
+        if (max != Integer.MAX_VALUE) {
+            range = "be between " + min + " and " + max;
+        } else if (min == 0) {
+            range = "not be negative";
+        } else {
+            range = "be at least " + min;
+        }
+        logger.warning(key + " must " + range + "! Using default value of " + defaultValue + ".");
+        return defaultValue;
+    }
+
+    /**
+     * Reads a decimal setting that must be greater than a lower bound and at most an upper bound.
+     * A value outside the range is replaced by the default, with a warning.
+     *
+     * @param config       the parsed configuration
+     * @param logger       the logger an invalid value is reported to
+     * @param key          the path of the setting
+     * @param min          the exclusive lower bound
+     * @param max          the inclusive upper bound
+     * @param defaultValue the value used if the setting is missing or invalid
+     * @return the value of the setting
+     */
+    private static double readDouble(YamlConfiguration config, Logger logger, String key, double min, double max, double defaultValue) {
+        double value = config.getDouble(key, defaultValue);
+        if (value > min && value <= max) {
+            return value;
+        }
+        logger.warning(key + " must be greater than " + min + " and at most " + max + "! Using default value of " + defaultValue + ".");
+        return defaultValue;
     }
 
     /**
      * Loads the ping latency thresholds from the configuration.
      * It retrieves four thresholds: excellent, good, medium, and bad.
      * If the values are invalid, default values are used.
+     *
+     * @param config the parsed configuration
+     * @param logger the logger invalid values are reported to
+     * @return the sorted thresholds
      */
-    private void loadPingThresholds() {
+    private List<Integer> loadPingThresholds(YamlConfiguration config, Logger logger) {
         try {
-            pingThresholds = Stream.of(
-                    yamlConfig.getInt("ping-thresholds.excellent", DEFAULT_THRESHOLDS.get(0)),
-                    yamlConfig.getInt("ping-thresholds.good", DEFAULT_THRESHOLDS.get(1)),
-                    yamlConfig.getInt("ping-thresholds.medium", DEFAULT_THRESHOLDS.get(2)),
-                    yamlConfig.getInt("ping-thresholds.bad", DEFAULT_THRESHOLDS.get(3))
+            List<Integer> pingThresholds = Stream.of(
+                    config.getInt("ping-thresholds.excellent", DEFAULT_THRESHOLDS.get(0)),
+                    config.getInt("ping-thresholds.good", DEFAULT_THRESHOLDS.get(1)),
+                    config.getInt("ping-thresholds.medium", DEFAULT_THRESHOLDS.get(2)),
+                    config.getInt("ping-thresholds.bad", DEFAULT_THRESHOLDS.get(3))
                     )
                     .sorted().collect(Collectors.toList());
 
@@ -100,78 +374,277 @@ public class PingSettings {
             if (pingThresholds.stream().anyMatch(t -> t < 0)) {
                 throw new IllegalArgumentException("Ping thresholds must be non-negative.");
             }
+            return pingThresholds;
         } catch (Exception e) {
             // In case of an error, use default values
-            plugin.getLogger().warning("Error loading ping thresholds! Using default values.");
-            pingThresholds = DEFAULT_THRESHOLDS;
+            logger.warning("Error loading ping thresholds! Using default values.");
+            return DEFAULT_THRESHOLDS;
+        }
+    }
+
+    /**
+     * Parses the "tiers" list of the configuration.
+     * Each tier has a label, a color and a max ping, except the last tier, which covers every higher ping.
+     *
+     * @param config the parsed configuration
+     * @return the configured tiers, from best to worst
+     * @throws IllegalArgumentException if a tier is missing its max ping or has an unknown color
+     */
+    private List<LatencyClassifier.Tier> parseTiers(YamlConfiguration config) {
+        List<Map<?, ?>> entries = config.getMapList("tiers");
+        List<LatencyClassifier.Tier> tiers = new ArrayList<>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            Map<?, ?> entry = entries.get(i);
+            String label = entry.get("label") == null ? "tier " + (i + 1) : entry.get("label").toString();
+
+            int maxPing = Integer.MAX_VALUE;
+            if (i < entries.size() - 1) {
+                if (!(entry.get("max") instanceof Number max)) {
+                    throw new IllegalArgumentException("tier " + label + " needs a max ping");
+                }
+                maxPing = max.intValue();
+            }
+
+            NamedTextColor color = entry.get("color") == null ? null
+                    : NamedTextColor.NAMES.value(entry.get("color").toString().toLowerCase(Locale.ROOT));
+            if (color == null) {
+                throw new IllegalArgumentException("tier " + label + " has an unknown color");
+            }
+
+            tiers.add(new LatencyClassifier.Tier(label, maxPing, color));
         }
+        return tiers;
+    }
+
+    /**
+     * Converts tiers into the format of the "tiers" list of the configuration.
+     *
+     * @param classifier the classifier holding the tiers
+     * @return the tiers as a list of maps
+     */
+    private List<Map<String, Object>> serializeTiers(LatencyClassifier classifier) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (LatencyClassifier.Tier tier : classifier.getTiers()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("label", tier.label());
+            if (tier.maxPing() != Integer.MAX_VALUE) {
+                entry.put("max", tier.maxPing());
+            }
+            entry.put("color", NamedTextColor.NAMES.key(tier.color()));
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Compiles a classifier for the tiers, reusing the current one if the tiers did not change.
+     * Reusing it keeps the shared tab suffixes, so a reload does not re-send every tab list name.
+     *
+     * @param tiers the tiers, from best to worst
+     * @return the classifier for the tiers
+     */
+    private LatencyClassifier compileClassifier(List<LatencyClassifier.Tier> tiers) {
+        Snapshot current = snapshot;
+        if (current != null && current.tiers().classifier().getTiers().equals(tiers)) {
+            return current.tiers().classifier();
+        }
+        return LatencyClassifier.compile(tiers);
     }
 
     /**
      * Logs the current configuration values for debugging and verification.
      * Outputs the loaded ping thresholds.
+     *
+     * @param loaded the loaded settings
      */
-    private void logConfiguration() {
+    private void logConfiguration(Snapshot loaded) {
 
         plugin.getLogger().info("Config loaded successfully!");
 
-        plugin.getLogger().info("Latency thresholds: " + pingThresholds.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+        plugin.getLogger().info("Latency tiers: " + loaded.tiers().classifier().getTiers().stream()
+                .map(tier -> tier.label() + (tier.maxPing() == Integer.MAX_VALUE ? "" : " <= " + tier.maxPing() + " ms"))
+                .collect(Collectors.joining(", ")));
+
+        plugin.getLogger().info("Showing ping on tab: " + loaded.tab().showPingOnTab());
+
+        plugin.getLogger().info("Tab update interval: " + loaded.tab().interval() + " ticks in " + loaded.tab().shards() + " shard(s), " + loaded.tab().displayMode().getKey() + " display mode");
+
+        plugin.getLogger().info("Ping history window: " + loaded.sampler().windowSize() + " samples");
 
-        plugin.getLogger().info("Showing ping on tab: " + showPingOnTab);
+        plugin.getLogger().info("Smoothing: " + (loaded.sampler().smoothing() ? "enabled (alpha " + loaded.sampler().alpha() + ", hysteresis " + loaded.sampler().hysteresis() + " ms)" : "disabled"));
+
+        plugin.getLogger().info("Auto reload: " + (loaded.autoReload().enabled() ? "enabled" : "disabled"));
 
     }
 
     /**
      * Updates the configuration file with the current settings.
      * This method should be called on configuration load to ensure the file is up to date.
+     * Nothing is written if every value is already up to date.
+     *
+     * @param loaded the loaded settings
      */
-    private void syncConfiguration() {
+    private void syncConfiguration(Snapshot loaded) {
 
-        set("show-ping-on-tab", showPingOnTab);
-        set("ping-thresholds.excellent", pingThresholds.get(0));
-        set("ping-thresholds.good", pingThresholds.get(1));
-        set("ping-thresholds.medium", pingThresholds.get(2));
-        set("ping-thresholds.bad", pingThresholds.get(3));
-        saveConfig();
+        set("show-ping-on-tab", loaded.tab().showPingOnTab());
+        if (!loaded.tiers().custom()) {
+            set("ping-thresholds.excellent", loaded.tiers().pingThresholds().get(0));
+            set("ping-thresholds.good", loaded.tiers().pingThresholds().get(1));
+            set("ping-thresholds.medium", loaded.tiers().pingThresholds().get(2));
+            set("ping-thresholds.bad", loaded.tiers().pingThresholds().get(3));
+        }
+        set("tab-update.interval-ticks", loaded.tab().interval());
+        set("tab-update.shards", loaded.tab().shards());
+        set("tab-update.display-mode", loaded.tab().displayMode().getKey());
+        set("ping-history.window-size", loaded.sampler().windowSize());
+        set("smoothing.enabled", loaded.sampler().smoothing());
+        set("smoothing.alpha", loaded.sampler().alpha());
+        set("smoothing.hysteresis", loaded.sampler().hysteresis());
+        set("auto-reload.enabled", loaded.autoReload().enabled());
+        set("auto-reload.debounce-ms", loaded.autoReload().debounceMs());
+        set("permission-cache.refresh-seconds", loaded.commands().permissionRefreshSeconds());
+        set("tab-completion.max-results", loaded.commands().completionLimit());
+        set("history-store.enabled", loaded.history().enabled());
+        set("history-store.sample-interval-seconds", loaded.history().sampleSeconds());
+        set("history-store.segment-size-kb", loaded.history().segmentSizeKb());
+        set("history-store.segment-minutes", loaded.history().segmentMinutes());
+        set("history-store.retention-days", loaded.history().retentionDays());
+        set("metrics.enabled", loaded.metrics().enabled());
+        set("metrics.bind-address", loaded.metrics().bindAddress());
+        set("metrics.port", loaded.metrics().port());
+        set("audit-log.enabled", loaded.audit().enabled());
+        set("audit-log.queue-capacity", loaded.audit().queueCapacity());
+        set("audit-log.when-full", loaded.audit().blockWhenFull() ? "block" : "drop");
+        set("audit-log.max-file-size-kb", loaded.audit().fileSizeKb());
+        set("audit-log.rotate-minutes", loaded.audit().rotateMinutes());
+        set("audit-log.max-files", loaded.audit().maxFiles());
+        set("lag-alerts.enabled", loaded.alerts().enabled());
+        set("lag-alerts.spike-delta-ms", loaded.alerts().spikeDelta());
+        set("lag-alerts.baseline-seconds", loaded.alerts().baselineSeconds());
+        set("lag-alerts.sustained-ping-ms", loaded.alerts().sustainedPing());
+        set("lag-alerts.sustained-seconds", loaded.alerts().sustainedSeconds());
+        set("lag-alerts.window-seconds", loaded.alerts().windowSeconds());
+        set("lag-alerts.player-cooldown-seconds", loaded.alerts().playerCooldownSeconds());
+        set("lag-alerts.max-alerts-per-minute", loaded.alerts().maxPerMinute());
+        set("lag-alerts.server-wide-percent", loaded.alerts().serverWidePercent());
+        set("lag-alerts.server-wide-min-players", loaded.alerts().serverWideMinPlayers());
     }
 
 
     /**
      * Saves the current configuration to the config.yml file.
+     * The file is written in the background, together with any other change made shortly before or after.
      * If the save fails, a warning message is logged.
      */
     public void saveConfig() {
+        if (persister != null) {
+            persister.markDirty();
+        }
+    }
+
+    /**
+     * Writes any unsaved changes to the config.yml file right away.
+     * This blocks until the file is written, so it is meant for shutdown.
+     */
+    public void flush() {
+        if (persister != null) {
+            persister.flush();
+        }
+    }
+
+    /**
+     * Gets how often and how long config.yml was loaded from disk.
+     *
+     * @return the reload durations
+     */
+    public DurationCounter getReloadDurations() {
+        return reloadDurations;
+    }
+
+    /**
+     * Gets how often and how long config.yml was written to disk.
+     *
+     * @return the save durations
+     */
+    public DurationCounter getSaveDurations() {
+        return saveDurations;
+    }
+
+    /**
+     * Converts the configuration to YAML for the background writer.
+     * The result is remembered, so the file watcher can tell our own writes from external edits.
+     *
+     * @return the configuration as a YAML string
+     */
+    private synchronized String saveToString() {
+        lastKnownContents = yamlConfig.saveToString();
+        return lastKnownContents;
+    }
+
+    /**
+     * Checks whether the config.yml file on disk differs from what the plugin last loaded or saved.
+     *
+     * @return true if the file was changed by someone else
+     */
+    public boolean hasChangedOnDisk() {
         try {
-            yamlConfig.save(configFile);
+            String contents = Files.readString(configFile.toPath(), StandardCharsets.UTF_8);
+            return !contents.equals(lastKnownContents);
         } catch (IOException e) {
-            e.printStackTrace();
-            plugin.getLogger().warning("Failed to save configuration file.");
+            return false;
         }
     }
 
     /**
      * Sets a value in the configuration and saves the updated configuration file.
+     * If the value is unchanged, nothing is saved.
      *
      * @param path  the configuration path
      * @param value the value to set
      */
-    public void set(@NotNull String path, @NotNull Object value) {
+    public synchronized void set(@NotNull String path, @NotNull Object value) {
+        if (Objects.equals(yamlConfig.get(path), value)) {
+            return;
+        }
         yamlConfig.set(path, value);
         saveConfig();
     }
 
+    /**
+     * Gets the current settings snapshot.
+     * Code that reads several settings together should read the snapshot once and use it throughout,
+     * so a reload in between cannot mix old and new values.
+     *
+     * @return the current settings
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
     /**
      * Gets the list of ping latency thresholds from the configuration.
-     * The list contains four values representing different latency levels:
+     * The list contains the highest ping of every tier but the last. With the default tiers, these are:
      * - Excellent
      * - Good
      * - Medium
      * - Bad
      *
-     * @return a sorted list of four integers representing latency levels
+     * @return a sorted list of integers representing latency levels
      */
     public List<Integer> getPingThresholds() {
-        return pingThresholds;
+        return snapshot.tiers().classifier().getThresholds();
+    }
+
+    /**
+     * Gets the classifier for the current latency tiers.
+     * The tiers of a classifier never change; it is replaced as a whole when the settings change,
+     * so callers should read it once and use that snapshot.
+     *
+     * @return the current latency classifier
+     */
+    public LatencyClassifier getClassifier() {
+        return snapshot.tiers().classifier();
     }
 
 
@@ -181,7 +654,108 @@ public class PingSettings {
      * @return the value of show-ping-on-tab
      */
     public Boolean getShowPingOnTab() {
-        return showPingOnTab;
+        return snapshot.tab().showPingOnTab();
+    }
+
+    /**
+     * Gets the number of ticks it takes to update the tab list of every online player once.
+     *
+     * @return the tab update interval in ticks
+     */
+    public int getTabUpdateInterval() {
+        return snapshot.tab().interval();
+    }
+
+    /**
+     * Gets the number of shards the online players are split into.
+     * One shard is updated per run, so each run handles roughly 1/shards of the players.
+     *
+     * @return the number of tab update shards
+     */
+    public int getTabUpdateShards() {
+        return snapshot.tab().shards();
+    }
+
+    /**
+     * Gets the number of ping samples kept per player for the rolling statistics.
+     * One sample is taken per player every tab update interval.
+     *
+     * @return the ping history window size
+     */
+    public int getHistoryWindowSize() {
+        return snapshot.sampler().windowSize();
+    }
+
+    /**
+     * Checks whether the tab list shows the smoothed ping with hysteresis on the color tiers.
+     *
+     * @return true if smoothing is enabled
+     */
+    public boolean isSmoothingEnabled() {
+        return snapshot.sampler().smoothing();
+    }
+
+    /**
+     * Gets the weight of a new sample in the smoothed ping.
+     *
+     * @return the smoothing factor, greater than 0 and at most 1
+     */
+    public double getSmoothingAlpha() {
+        return snapshot.sampler().alpha();
+    }
+
+    /**
+     * Gets how far past a threshold the smoothed ping must be before the tier color changes.
+     *
+     * @return the hysteresis margin in milliseconds
+     */
+    public int getSmoothingHysteresis() {
+        return snapshot.sampler().hysteresis();
+    }
+
+    /**
+     * Gets the number of ticks between two runs of the tab update task.
+     *
+     * @return the tab update period in ticks
+     */
+    public int getTabUpdatePeriod() {
+        return snapshot.tab().period();
+    }
+
+    /**
+     * Checks whether config.yml is reloaded automatically when it changes on disk.
+     *
+     * @return true if auto reload is enabled
+     */
+    public boolean isAutoReload() {
+        return snapshot.autoReload().enabled();
+    }
+
+    /**
+     * Gets how long the file watcher waits for more changes before reloading.
+     *
+     * @return the auto reload debounce delay in milliseconds
+     */
+    public int getAutoReloadDebounce() {
+        return snapshot.autoReload().debounceMs();
+    }
+
+    /**
+     * Gets the maximum number of player names suggested by tab completion.
+     *
+     * @return the tab completion limit
+     */
+    public int getCompletionLimit() {
+        return snapshot.commands().completionLimit();
+    }
+
+    /**
+     * Checks whether ping samples are stored on disk.
+     *
+     * @return true if the persistent ping history is enabled
+     */
+    public boolean isHistoryStoreEnabled() {
+        return snapshot.history().enabled();
     }
 
     /**
@@ -189,31 +763,270 @@ public class PingSettings {
      *
      * @param showPingOnTab the value to set
      */
-    public void setShowPingOnTab(@NotNull Boolean showPingOnTab) {
-        this.showPingOnTab = showPingOnTab;
+    public synchronized void setShowPingOnTab(@NotNull Boolean showPingOnTab) {
+        Snapshot current = snapshot;
+        snapshot = current.withTab(current.tab().withShowPingOnTab(showPingOnTab));
         set("show-ping-on-tab", showPingOnTab);
     }
 
 
     /**
      * Sets the ping latency thresholds for the plugin.
-     * The list must contain exactly four values, representing the thresholds for excellent, good, medium, and bad pings.
+     * The list must contain one value per tier except the last, for example the thresholds for excellent, good, medium,
+     * and bad pings with the default tiers. The labels and colors of the tiers are kept.
      *
-     * @param pingThresholds a list of four integers representing the latency thresholds
-     * @throws IllegalArgumentException if the list doesn't contain exactly four values
+     * @param pingThresholds a list of integers representing the latency thresholds
+     * @throws IllegalArgumentException if the list doesn't contain one value per tier except the last
      */
-    public void setPingThresholds(@NotNull List<Integer> pingThresholds) {
-        if (pingThresholds.size() != 4) {
-            throw new IllegalArgumentException("Ping times list must contain exactly 4 values.");
+    public synchronized void setPingThresholds(@NotNull List<Integer> pingThresholds) {
+        Snapshot current = snapshot;
+        List<LatencyClassifier.Tier> tiers = current.tiers().classifier().getTiers();
+        if (pingThresholds.size() != tiers.size() - 1) {
+            throw new IllegalArgumentException("Ping times list must contain exactly " + (tiers.size() - 1) + " values.");
         }
 
         // Sort and set the new ping thresholds
-        this.pingThresholds = pingThresholds.stream().sorted().collect(Collectors.toList());
+        List<Integer> sorted = pingThresholds.stream().sorted().collect(Collectors.toList());
+        List<LatencyClassifier.Tier> updated = new ArrayList<>();
+        for (int i = 0; i < tiers.size(); i++) {
+            int maxPing = i < sorted.size() ? sorted.get(i) : Integer.MAX_VALUE;
+            updated.add(new LatencyClassifier.Tier(tiers.get(i).label(), maxPing, tiers.get(i).color()));
+        }
+
+        LatencyClassifier classifier = compileClassifier(updated);
+        snapshot = current.withTiers(new TierSettings(current.tiers().custom() ? current.tiers().pingThresholds() : sorted,
+                current.tiers().custom(), classifier));
 
         // Update the configuration file with the new values
-        set("ping-thresholds.excellent", pingThresholds.get(0));
-        set("ping-thresholds.good", pingThresholds.get(1));
-        set("ping-thresholds.medium", pingThresholds.get(2));
-        set("ping-thresholds.bad", pingThresholds.get(3));
+        if (current.tiers().custom()) {
+            set("tiers", serializeTiers(classifier));
+        } else {
+            set("ping-thresholds.excellent", sorted.get(0));
+            set("ping-thresholds.good", sorted.get(1));
+            set("ping-thresholds.medium", sorted.get(2));
+            set("ping-thresholds.bad", sorted.get(3));
+        }
+    }
+
+    /**
+     * How the latency tier of a player is shown on the tab list.
+     */
+    public enum DisplayMode {
+
+        /**
+         * The ping is rendered into the tab list name of every player.
+         */
+        NAME("name"),
+
+        /**
+         * Every tier is a scoreboard team with the tier color and a suffix, and players are moved between the teams
+         * only when their tier changes.
+         */
+        TEAM("team"),
+
+        /**
+         * Like the team mode, but every player allowed to view ping gets their own scoreboard with the teams,
+         * so only they see the tiers.
+         */
+        VIEWER("viewer");
+
+        private final String key;
+
+        DisplayMode(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Gets the name of the mode in the configuration.
+         *
+         * @return the key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Parses a mode from its configuration name, ignoring case.
+         *
+         * @param key the name, like team
+         * @return the mode, or null if there is no mode with that name
+         */
+        public static @Nullable DisplayMode parse(@Nullable String key) {
+            for (DisplayMode mode : values()) {
+                if (mode.key.equalsIgnoreCase(key)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * An immutable snapshot of every setting, published as a whole when the configuration is loaded.
+     * The settings are grouped by feature, so adding a setting only touches the record of its feature.
+     *
+     * @param tab        the tab list settings
+     * @param tiers      the latency tiers
+     * @param sampler    the rolling ping history and smoothing settings
+     * @param autoReload the config file watcher settings
+     * @param commands   the permission cache and tab completion settings
+     * @param history    the persistent ping history settings
+     * @param metrics    the metrics endpoint settings
+     * @param audit      the audit log settings
+     * @param alerts     the lag alert settings
+     */
+    public record Snapshot(TabSettings tab, TierSettings tiers, SamplerSettings sampler, AutoReloadSettings autoReload,
+                           CommandSettings commands, HistorySettings history, MetricsSettings metrics,
+                           AuditSettings audit, AlertSettings alerts) {
+
+        /**
+         * Copies the snapshot with other tab list settings.
+         *
+         * @param tab the tab list settings
+         * @return the new snapshot
+         */
+        public Snapshot withTab(TabSettings tab) {
+            return new Snapshot(tab, tiers, sampler, autoReload, commands, history, metrics, audit, alerts);
+        }
+
+        /**
+         * Copies the snapshot with other latency tiers.
+         *
+         * @param tiers the latency tiers
+         * @return the new snapshot
+         */
+        public Snapshot withTiers(TierSettings tiers) {
+            return new Snapshot(tab, tiers, sampler, autoReload, commands, history, metrics, audit, alerts);
+        }
+    }
+
+    /**
+     * The tab list settings.
+     *
+     * @param showPingOnTab whether ping is shown on the tab list
+     * @param interval      ticks between two updates of the same player
+     * @param shards        number of shards the players are split into
+     * @param displayMode   how the latency tier is shown on the tab list
+     */
+    public record TabSettings(boolean showPingOnTab, int interval, int shards, DisplayMode displayMode) {
+
+        /**
+         * Gets the number of ticks between two runs of the tab update task.
+         *
+         * @return the tab update period in ticks
+         */
+        public int period() {
+            return Math.max(1, interval / shards);
+        }
+
+        /**
+         * Copies the settings with ping shown on or hidden from the tab list.
+         *
+         * @param showPingOnTab whether ping is shown on the tab list
+         * @return the new settings
+         */
+        public TabSettings withShowPingOnTab(boolean showPingOnTab) {
+            return new TabSettings(showPingOnTab, interval, shards, displayMode);
+        }
+    }
+
+    /**
+     * The latency tiers.
+     *
+     * @param pingThresholds the four legacy thresholds from ping-thresholds
+     * @param custom         whether the tiers come from a "tiers" list instead of ping-thresholds
+     * @param classifier     the compiled latency tiers
+     */
+    public record TierSettings(List<Integer> pingThresholds, boolean custom, LatencyClassifier classifier) {
+    }
+
+    /**
+     * The rolling ping history and smoothing settings of the ping sampler.
+     *
+     * @param windowSize ping samples kept per player
+     * @param smoothing  whether the tab list shows the smoothed ping
+     * @param alpha      weight of a new sample in the smoothed ping
+     * @param hysteresis margin in milliseconds before a tier color changes
+     */
+    public record SamplerSettings(int windowSize, boolean smoothing, double alpha, int hysteresis) {
+
+
+    }
+
+    /**
+     * The config file watcher settings.
+     *
+     * @param enabled    whether config.yml is reloaded when it changes on disk
+     * @param debounceMs milliseconds to wait for more changes before reloading
+     */
+    public record AutoReloadSettings(boolean enabled, int debounceMs) {
+    }
+
+    /**
+     * The permission cache and tab completion settings.
+     *
+     * @param permissionRefreshSeconds seconds before cached permissions are resolved again, 0 to only refresh on events
+     * @param completionLimit          maximum number of player names suggested by tab completion
+     */
+    public record CommandSettings(int permissionRefreshSeconds, int completionLimit) {
+    }
+
+    /**
+     * The persistent ping history settings.
+     *
+     * @param enabled       whether ping samples are stored on disk
+     * @param sampleSeconds seconds between two stored samples of the same player
+     * @param segmentSizeKb size in kilobytes after which a new history segment is started
+     * @param segmentMinutes age in minutes after which a new history segment is started
+     * @param retentionDays number of days stored history is kept
+     */
+    public record HistorySettings(boolean enabled, int sampleSeconds, int segmentSizeKb, int segmentMinutes, int retentionDays) {
+
+
+    }
+
+    /**
+     * The metrics endpoint settings.
+     *
+     * @param enabled     whether the Prometheus metrics endpoint is served
+     * @param bindAddress the address the metrics endpoint listens on
+     * @param port        the port the metrics endpoint listens on
+     */
+    public record MetricsSettings(boolean enabled, String bindAddress, int port) {
+    }
+
+    /**
+     * The audit log settings.
+     *
+     * @param enabled       whether ping and IP queries are written to the audit log
+     * @param queueCapacity the number of audit records that can wait for the writer
+     * @param blockWhenFull whether a command waits for room in a full audit queue instead of dropping the record
+     * @param fileSizeKb    the size in kilobytes at which the audit log is rotated
+     * @param rotateMinutes the age in minutes at which the audit log is rotated
+     * @param maxFiles      the number of rotated audit log files that are kept
+     */
+    public record AuditSettings(boolean enabled, int queueCapacity, boolean blockWhenFull, int fileSizeKb,
+                                int rotateMinutes, int maxFiles) {
+
+
+    }
+
+    /**
+     * The lag alert settings.
+     *
+     * @param enabled               whether lag spikes are reported to staff
+     * @param spikeDelta            how far in milliseconds the ping must jump above its baseline to count as a spike
+     * @param baselineSeconds       the time constant in seconds of the ping baseline spikes are measured against
+     * @param sustainedPing         the ping in milliseconds that counts as high latency
+     * @param sustainedSeconds      how long in seconds the ping must stay high before it is reported
+     * @param windowSeconds         the number of seconds lag events are collected for one coalesced alert
+     * @param playerCooldownSeconds the number of seconds before the same player is named in an alert again
+     * @param maxPerMinute          the maximum number of alerts sent per minute
+     * @param serverWidePercent     the percentage of online players that must spike at once for a server-wide alert
+     * @param serverWideMinPlayers  the minimum number of players that must spike at once for a server-wide alert
+     */
+    public record AlertSettings(boolean enabled, int spikeDelta, int baselineSeconds, int sustainedPing,
+                                int sustainedSeconds, int windowSeconds, int playerCooldownSeconds, int maxPerMinute,
+                                int serverWidePercent, int serverWideMinPlayers) {
     }
 }
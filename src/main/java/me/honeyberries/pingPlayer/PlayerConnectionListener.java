@@ -0,0 +1,51 @@
+package me.honeyberries.pingPlayer;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Keeps the plugin's per-player state in sync with players joining and leaving the server.
+ */
+public class PlayerConnectionListener implements Listener {
+
+    private final PingPlayer plugin = PingPlayer.getInstance();
+
+    /**
+     * Starts tracking a player when they join.
+     *
+     * @param event the join event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getTabRenderCache().track(event.getPlayer());
+        plugin.getPingSampler().track(event.getPlayer());
+        plugin.getPermissionCache().refresh(event.getPlayer());
+        plugin.getPlayerNameIndex().add(event.getPlayer().getName());
+        plugin.getAddressIndex().add(event.getPlayer());
+        plugin.getViewerTeams().track(event.getPlayer());
+        plugin.getTabUpdateTask().startFor(event.getPlayer());
+    }
+
+    /**
+     * Releases a player's state when they leave.
+     *
+     * @param event the quit event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getTabUpdateTask().stopFor(event.getPlayer());
+        plugin.getTabRenderCache().untrack(event.getPlayer());
+        plugin.getTierTeams().untrack(event.getPlayer());
+        plugin.getViewerTeams().untrack(event.getPlayer());
+        plugin.getPingSampler().untrack(event.getPlayer());
+        plugin.getPermissionCache().untrack(event.getPlayer());
+        plugin.getPlayerNameIndex().remove(event.getPlayer().getName());
+        plugin.getAddressIndex().remove(event.getPlayer());
+        plugin.getHistoryStore().untrack(event.getPlayer());
+        plugin.getLatencyHistogram().untrack(event.getPlayer());
+        plugin.getLagSpikeDetector().untrack(event.getPlayer());
+    }
+}
@@ -0,0 +1,106 @@
+package me.honeyberries.pingPlayer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A sorted index of the names of all online players, used for tab completion.
+ * The names are kept in an array sorted by their lowercase form, so all names starting with a prefix
+ * form one contiguous range that is found with a binary search, instead of filtering every online player.
+ * The index is updated when players join and quit. Updates replace the arrays as a whole,
+ * so lookups can run on any thread without locking.
+ */
+public class PlayerNameIndex {
+
+    private volatile Names names = new Names(new String[0], new String[0]);
+
+    /**
+     * Adds a player name to the index. Called when the player joins.
+     *
+     * @param name the player name
+     */
+    public synchronized void add(String name) {
+        Names current = names;
+        String key = name.toLowerCase(Locale.ROOT);
+        int index = Arrays.binarySearch(current.keys, key);
+
+        // Replace the entry if the name is already indexed
+        if (index >= 0) {
+            String[] values = current.values.clone();
+            values[index] = name;
+            names = new Names(current.keys, values);
+            return;
+        }
+
+        int insertAt = -index - 1;
+        names = new Names(insert(current.keys, insertAt, key), insert(current.values, insertAt, name));
+    }
+
+    /**
+     * Removes a player name from the index. Called when the player quits.
+     *
+     * @param name the player name
+     */
+    public synchronized void remove(String name) {
+        Names current = names;
+        int index = Arrays.binarySearch(current.keys, name.toLowerCase(Locale.ROOT));
+        if (index < 0) {
+            return;
+        }
+        names = new Names(delete(current.keys, index), delete(current.values, index));
+    }
+
+    /**
+     * Finds the names of the online players that start with a prefix, ignoring case.
+     *
+     * @param prefix the prefix, in lowercase
+     * @param limit  the maximum number of names to return
+     * @return a new mutable list of at most limit matching names, sorted alphabetically
+     */
+    public List<String> complete(String prefix, int limit) {
+        Names current = names;
+        int index = Arrays.binarySearch(current.keys, prefix);
+        int start = index >= 0 ? index : -index - 1;
+
+        List<String> matches = new ArrayList<>();
+        for (int i = start; i < current.keys.length && matches.size() < limit && current.keys[i].startsWith(prefix); i++) {
+            matches.add(current.values[i]);
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the number of indexed names.
+     *
+     * @return the number of online players in the index
+     */
+    public int size() {
+        return names.keys.length;
+    }
+
+    private static String[] insert(String[] array, int index, String value) {
+        String[] result = new String[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static String[] delete(String[] array, int index) {
+        String[] result = new String[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    /**
+     * The lowercase keys and the original names, sorted by key.
+     *
+     * @param keys   the lowercase names, sorted
+     * @param values the original names, in the same order
+     */
+    private record Names(String[] keys, String[] values) {
+    }
+}
@@ -0,0 +1,269 @@
+package me.honeyberries.pingPlayer;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how much time the plugin spends in its tasks and commands, over a sliding window of the last minute.
+ * <p>
+ * Each section keeps one slot per second of the window. A measurement only reads the clock and the
+ * thread's allocation counter twice and adds to {@link LongAdder}s of the current slot, so the profiler
+ * is cheap enough to stay on all the time. When a slot is reused for a new second it is cleared first;
+ * a measurement that races with the clearing may be lost, which is fine for an estimate.
+ */
+public class Profiler {
+
+    // The length of the sliding window, in seconds
+    static final int WINDOW_SECONDS = 60;
+
+    /**
+     * The parts of the plugin that are measured.
+     */
+    public enum Section {
+        TAB_UPDATE("Tab update task", true),
+        SCHEDULED_SYNC("Scheduled tasks (server thread)", false),
+        SCHEDULED_ASYNC("Scheduled tasks (async)", false),
+        COMMAND_PING("/ping", false),
+        COMMAND_IP("/ip", false),
+        COMMAND_PINGPLAYER("/pingplayer", false);
+
+        private final String displayName;
+        private final boolean countsPlayers;
+
+        Section(String displayName, boolean countsPlayers) {
+            this.displayName = displayName;
+            this.countsPlayers = countsPlayers;
+        }
+
+        /**
+         * Gets the name shown in the profile report.
+         *
+         * @return the display name
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * Checks whether the items recorded for this section are processed players.
+         *
+         * @return true if the section counts players
+         */
+        public boolean countsPlayers() {
+            return countsPlayers;
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final boolean allocationSupported;
+    private final Window[] windows = new Window[Section.values().length];
+    private final long startSecond = currentSecond();
+
+    /**
+     * Creates a profiler. Allocation is only measured if the JVM supports per-thread allocation counters.
+     */
+    public Profiler() {
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sunBean
+                && sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+            bean = sunBean;
+        }
+        threads = bean;
+        allocationSupported = bean != null;
+
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new Window();
+        }
+    }
+
+    /**
+     * Gets the number of bytes the current thread allocated so far, to pass to {@link #record} later.
+     *
+     * @return the allocated bytes, or 0 if allocation is not measured
+     */
+    public long allocatedBytes() {
+        return allocationSupported ? threads.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Records one run of a section.
+     *
+     * @param section        the section that ran
+     * @param startNanos     the value of {@link System#nanoTime()} when the run started
+     * @param startAllocated the value of {@link #allocatedBytes()} when the run started
+     * @param items          the number of items processed, like players
+     * @return how long the run took, in nanoseconds
+     */
+    public long record(Section section, long startNanos, long startAllocated, int items) {
+        long nanos = System.nanoTime() - startNanos;
+        long allocated = allocationSupported ? threads.getCurrentThreadAllocatedBytes() - startAllocated : 0;
+        windows[section.ordinal()].record(currentSecond(), nanos, allocated, items);
+        return nanos;
+    }
+
+    /**
+     * Wraps a task so every run of it is recorded.
+     *
+     * @param section  the section the task belongs to
+     * @param runnable the task
+     * @return the measured task
+     */
+    public Runnable wrap(Section section, Runnable runnable) {
+        return () -> {
+            long start = System.nanoTime();
+            long allocated = allocatedBytes();
+            try {
+                runnable.run();
+            } finally {
+                record(section, start, allocated, 1);
+            }
+        };
+    }
+
+    /**
+     * Sums up the runs of a section during the sliding window.
+     *
+     * @param section the section
+     * @return the statistics of the section
+     */
+    public Stats stats(Section section) {
+        long now = currentSecond();
+        int seconds = (int) Math.min(WINDOW_SECONDS, now - startSecond + 1);
+        return windows[section.ordinal()].sum(now, seconds);
+    }
+
+    /**
+     * Checks whether allocation is measured.
+     *
+     * @return true if the JVM supports per-thread allocation counters
+     */
+    public boolean isAllocationSupported() {
+        return allocationSupported;
+    }
+
+    private static long currentSecond() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    /**
+     * The per-second slots of one section.
+     */
+    private static final class Window {
+
+        private final Slot[] slots = new Slot[WINDOW_SECONDS];
+
+        Window() {
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+        }
+
+        void record(long second, long nanos, long allocated, int items) {
+            Slot slot = slots[(int) (second % WINDOW_SECONDS)];
+
+            // Clear the slot if it still holds a second that has left the window
+            long slotSecond = slot.second.get();
+            if (slotSecond != second && slot.second.compareAndSet(slotSecond, second)) {
+                slot.clear();
+            }
+
+            slot.invocations.increment();
+            slot.nanos.add(nanos);
+            slot.maxNanos.accumulate(nanos);
+            slot.items.add(items);
+            slot.allocated.add(allocated);
+        }
+
+        Stats sum(long now, int seconds) {
+            long invocations = 0;
+            long nanos = 0;
+            long maxNanos = 0;
+            long items = 0;
+            long allocated = 0;
+
+            for (Slot slot : slots) {
+                if (now - slot.second.get() >= seconds) {
+                    continue;
+                }
+                invocations += slot.invocations.sum();
+                nanos += slot.nanos.sum();
+                maxNanos = Math.max(maxNanos, slot.maxNanos.get());
+                items += slot.items.sum();
+                allocated += slot.allocated.sum();
+            }
+            return new Stats(seconds, invocations, nanos, maxNanos, items, allocated);
+        }
+    }
+
+    /**
+     * The measurements of one second.
+     */
+    private static final class Slot {
+        private final AtomicLong second = new AtomicLong(-1);
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder items = new LongAdder();
+        private final LongAdder allocated = new LongAdder();
+
+        void clear() {
+            invocations.reset();
+            nanos.reset();
+            maxNanos.reset();
+            items.reset();
+            allocated.reset();
+        }
+    }
+
+    /**
+     * The runs of a section during the sliding window.
+     *
+     * @param seconds     the length of the window, shorter than a minute right after startup
+     * @param invocations the number of runs
+     * @param totalNanos  the total time of all runs, in nanoseconds
+     * @param maxNanos    the longest run, in nanoseconds
+     * @param items       the total number of items processed
+     * @param allocated   the estimated number of bytes allocated by all runs
+     */
+    public record Stats(int seconds, long invocations, long totalNanos, long maxNanos, long items, long allocated) {
+
+        /**
+         * Gets the average time of a run.
+         *
+         * @return the mean run time in nanoseconds, or 0 if there were no runs
+         */
+        public double meanNanos() {
+            return invocations == 0 ? 0 : (double) totalNanos / invocations;
+        }
+
+        /**
+         * Gets the average time spent per server tick, assuming 20 ticks per second.
+         *
+         * @return the time per tick in nanoseconds
+         */
+        public double nanosPerTick() {
+            return (double) totalNanos / (seconds * 20L);
+        }
+
+        /**
+         * Gets the average number of items processed per run.
+         *
+         * @return the items per run, or 0 if there were no runs
+         */
+        public double itemsPerRun() {
+            return invocations == 0 ? 0 : (double) items / invocations;
+        }
+
+        /**
+         * Gets the average number of bytes allocated per run.
+         *
+         * @return the allocated bytes per run, or 0 if there were no runs
+         */
+        public double allocatedPerRun() {
+            return invocations == 0 ? 0 : (double) allocated / invocations;
+        }
+    }
+}
@@ -1,12 +1,36 @@
 package me.honeyberries.pingPlayer;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public final class Scheduler {
 
     private static boolean isFolia;
     private static final Plugin plugin = PingPlayer.getInstance();
+    private static final Profiler profiler = PingPlayer.getInstance().getProfiler();
+
+    // The length of a tick, for the Folia async scheduler, which takes real time instead of ticks
+    private static final long TICK_MILLIS = 50;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    // The executor for blocking I/O, created on first use; once shut down, no new one is created
+    private static ExecutorService ioExecutor;
+    private static boolean shutDown;
+    private static final Executor profiledIoExecutor = command ->
+            ioExecutor().execute(profiler.wrap(Profiler.Section.SCHEDULED_ASYNC, command));
 
     static {
         try {
@@ -23,11 +47,12 @@ public final class Scheduler {
      * @param runnable the task to be run
      */
     public static void runTask(Runnable runnable) {
+        Runnable task = profiler.wrap(Profiler.Section.SCHEDULED_SYNC, runnable);
         try {
             if (isFolia)
-                Bukkit.getGlobalRegionScheduler().execute(plugin, runnable);
+                Bukkit.getGlobalRegionScheduler().execute(plugin, task);
             else
-                Bukkit.getScheduler().runTask(plugin, runnable);
+                Bukkit.getScheduler().runTask(plugin, task);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -39,11 +64,12 @@ public final class Scheduler {
      * @param runnable the task to be run
      */
     public static void runTaskAsynchronously(Runnable runnable) {
+        Runnable task = profiler.wrap(Profiler.Section.SCHEDULED_ASYNC, runnable);
         try {
             if (isFolia)
-                Bukkit.getGlobalRegionScheduler().execute(plugin, runnable);
+                Bukkit.getAsyncScheduler().runNow(plugin, t -> task.run());
             else
-                Bukkit.getScheduler().runTaskAsynchronously(plugin, runnable);
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -57,11 +83,12 @@ public final class Scheduler {
      * @return a Task representing the scheduled task
      */
     public static Task runTaskLater(Runnable runnable, long delayTicks) {
+        Runnable task = profiler.wrap(Profiler.Section.SCHEDULED_SYNC, runnable);
         try {
             if (isFolia)
-                return new Task(Bukkit.getGlobalRegionScheduler().runDelayed(plugin, t -> runnable.run(), delayTicks));
+                return new Task(Bukkit.getGlobalRegionScheduler().runDelayed(plugin, t -> task.run(), delayTicks));
             else
-                return new Task(Bukkit.getScheduler().runTaskLater(plugin, runnable, delayTicks));
+                return new Task(Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks));
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -76,11 +103,12 @@ public final class Scheduler {
      * @return a Task representing the scheduled task
      */
     public static Task runTaskLaterAsynchronously(Runnable runnable, long delayTicks) {
+        Runnable task = profiler.wrap(Profiler.Section.SCHEDULED_ASYNC, runnable);
         try {
             if (isFolia)
-                return new Task(Bukkit.getGlobalRegionScheduler().runDelayed(plugin, t -> runnable.run(), delayTicks));
+                return new Task(Bukkit.getAsyncScheduler().runDelayed(plugin, t -> task.run(), delayTicks * TICK_MILLIS, TimeUnit.MILLISECONDS));
             else
-                return new Task(Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, runnable, delayTicks));
+                return new Task(Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, task, delayTicks));
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -96,13 +124,27 @@ public final class Scheduler {
      * @return a Task representing the scheduled task
      */
     public static Task runTaskTimer(Runnable runnable, long delayTicks, long periodTicks) {
+        return runTaskTimer(runnable, delayTicks, periodTicks, Profiler.Section.SCHEDULED_SYNC);
+    }
+
+    /**
+     * Schedules a task to run repeatedly with a fixed delay between executions, measured in a profiler section.
+     *
+     * @param runnable the task to be run
+     * @param delayTicks the delay in ticks before the first execution
+     * @param periodTicks the period in ticks between subsequent executions
+     * @param section the profiler section of the task, or null if the task records its own section
+     * @return a Task representing the scheduled task
+     */
+    public static Task runTaskTimer(Runnable runnable, long delayTicks, long periodTicks, @Nullable Profiler.Section section) {
+        Runnable task = profiled(section, runnable);
         try {
             if (isFolia)
                 // Use folia task
-                return new Task(Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> runnable.run(), delayTicks < 1 ? 1 : delayTicks, periodTicks < 1 ? 1 : periodTicks));
+                return new Task(Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> task.run(), delayTicks < 1 ? 1 : delayTicks, periodTicks < 1 ? 1 : periodTicks));
             else
                 // Use bukkit task
-                return new Task(Bukkit.getScheduler().runTaskTimer(plugin, runnable, delayTicks, periodTicks));
+                return new Task(Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks));
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -118,17 +160,150 @@ public final class Scheduler {
      * @return a Task representing the scheduled task
      */
     public static Task runTaskTimerAsynchronously(Runnable runnable, long delayTicks, long periodTicks) {
+        Runnable task = profiler.wrap(Profiler.Section.SCHEDULED_ASYNC, runnable);
         try {
             if (isFolia)
-                return new Task(Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> runnable.run(), delayTicks < 1 ? 1 : delayTicks, periodTicks));
+                return new Task(Bukkit.getAsyncScheduler().runAtFixedRate(plugin, t -> task.run(), delayTicks * TICK_MILLIS, (periodTicks < 1 ? 1 : periodTicks) * TICK_MILLIS, TimeUnit.MILLISECONDS));
             else
-                return new Task(Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, runnable, delayTicks, periodTicks));
+                return new Task(Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, task, delayTicks, periodTicks));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Schedules a task to run repeatedly on the thread that owns the given entity.
+     * On Folia the task follows the entity across regions and stops by itself when the entity is removed.
+     * On other servers this is the same as {@link #runTaskTimer(Runnable, long, long)}.
+     *
+     * @param entity the entity the task belongs to
+     * @param runnable the task to be run
+     * @param delayTicks the delay in ticks before the first execution
+     * @param periodTicks the period in ticks between subsequent executions
+     * @return a Task representing the scheduled task, or null if the entity is no longer valid
+     */
+    public static Task runEntityTaskTimer(Entity entity, Runnable runnable, long delayTicks, long periodTicks) {
+        return runEntityTaskTimer(entity, runnable, delayTicks, periodTicks, Profiler.Section.SCHEDULED_SYNC);
+    }
+
+    /**
+     * Schedules a task to run repeatedly on the thread that owns the given entity, measured in a profiler section.
+     *
+     * @param entity the entity the task belongs to
+     * @param runnable the task to be run
+     * @param delayTicks the delay in ticks before the first execution
+     * @param periodTicks the period in ticks between subsequent executions
+     * @param section the profiler section of the task, or null if the task records its own section
+     * @return a Task representing the scheduled task, or null if the entity is no longer valid
+     */
+    public static Task runEntityTaskTimer(Entity entity, Runnable runnable, long delayTicks, long periodTicks, @Nullable Profiler.Section section) {
+        Runnable task = profiled(section, runnable);
+        try {
+            if (isFolia) {
+                ScheduledTask scheduled = entity.getScheduler().runAtFixedRate(plugin, t -> task.run(), null, delayTicks < 1 ? 1 : delayTicks, periodTicks < 1 ? 1 : periodTicks);
+                return scheduled == null ? null : new Task(scheduled);
+            } else
+                return new Task(Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks));
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Runs a blocking task, like reading or writing files, on the I/O executor.
+     * On Java 21 and later every task gets its own virtual thread, so slow disks never hold up a server thread
+     * or the async scheduler of the server. Use {@link #runTask(Runnable)} to get back to the main thread with the result.
+     *
+     * @param supplier the task to be run
+     * @param <T> the type of the result
+     * @return a future that completes with the result of the task, or exceptionally if it threw
+     *         or the plugin is already disabled
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, profiledIoExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Stops the I/O executor, giving running tasks a few seconds to finish before they are interrupted.
+     * Called when the plugin is disabled; tasks submitted afterwards are rejected.
+     */
+    public static void shutdown() {
+        ExecutorService executor;
+        synchronized (Scheduler.class) {
+            executor = ioExecutor;
+            ioExecutor = null;
+            shutDown = true;
+        }
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("I/O tasks did not finish within " + SHUTDOWN_TIMEOUT_SECONDS + " seconds and were interrupted.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the I/O executor, creating it on first use.
+     *
+     * @return the executor
+     * @throws RejectedExecutionException if the executor was shut down, as the plugin is disabled
+     */
+    private static synchronized ExecutorService ioExecutor() {
+        if (shutDown) {
+            throw new RejectedExecutionException("PingPlayer is disabled");
+        }
+        if (ioExecutor == null) {
+            ioExecutor = createIoExecutor();
+        }
+        return ioExecutor;
+    }
+
+    /**
+     * Creates a virtual thread per task executor when the JVM has one, or else a cached pool of daemon threads.
+     * Looked up by reflection, as the plugin is still built for Java 17.
+     *
+     * @return the executor
+     */
+    private static ExecutorService createIoExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Java 17 to 20: platform threads, which are reused and end after a minute without work
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "PingPlayer IO-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Wraps a task so its time is recorded in a profiler section.
+     *
+     * @param section the profiler section, or null if the task records its own section
+     * @param runnable the task
+     * @return the wrapped task, or the task itself if the section is null
+     */
+    private static Runnable profiled(@Nullable Profiler.Section section, Runnable runnable) {
+        return section == null ? runnable : profiler.wrap(section, runnable);
+    }
+
     /**
      * Checks if the server is running Folia.
      *
@@ -0,0 +1,138 @@
+package me.honeyberries.pingPlayer;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers what was last sent to each player's tab list entry.
+ * This lets the tab update task skip players whose visible ping and color did not change,
+ * instead of sending a new tab list name every tick.
+ * Each entry also keeps the player's name component, so it is only built once per session.
+ */
+public class TabRenderCache {
+
+    // Last rendered state per online player
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    // Counters for sent and skipped tab list updates
+    private final LongAdder sentUpdates = new LongAdder();
+    private final LongAdder skippedUpdates = new LongAdder();
+
+    /**
+     * Starts tracking a player. Called when the player joins.
+     *
+     * @param player the player to track
+     */
+    public void track(Player player) {
+        getOrCreate(player);
+    }
+
+    /**
+     * Stops tracking a player and forgets their last rendered state. Called when the player quits.
+     *
+     * @param player the player to forget
+     */
+    public void untrack(Player player) {
+        entries.remove(player.getUniqueId());
+    }
+
+    /**
+     * Forgets the last rendered state of every player, so the next update re-sends all tab list names.
+     */
+    public void invalidateAll() {
+        entries.values().forEach(Entry::reset);
+    }
+
+    /**
+     * Renders the tab list name of a player, if its visible value changed since it was last sent.
+     * Suffixes come from a {@link LatencyClassifier}, where each ping and tier has a single shared component,
+     * so an unchanged value is detected by identity and costs no allocation.
+     * With a hysteresis margin, the tier only changes once the ping crossed a boundary by that margin.
+     *
+     * @param player      the player being rendered
+     * @param classifier  the classifier for the current tiers
+     * @param ping        the ping to display
+     * @param hysteresis  the hysteresis margin in milliseconds, or 0 to disable it
+     * @return the new tab list name to send, or null if it is unchanged
+     */
+    public Component render(Player player, LatencyClassifier classifier, int ping, int hysteresis) {
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry == null) {
+            entry = getOrCreate(player);
+        }
+
+        int tier = hysteresis > 0 && entry.tier >= 0
+                ? classifier.classify(ping, entry.tier, hysteresis)
+                : classifier.classify(ping);
+        Component suffix = classifier.suffix(tier, ping);
+
+        if (entry.suffix == suffix) {
+            skippedUpdates.increment();
+            return null;
+        }
+
+        entry.tier = tier;
+        entry.suffix = suffix;
+        sentUpdates.increment();
+        return entry.name.append(suffix);
+    }
+
+    /**
+     * Gets the number of tab list updates that were sent.
+     *
+     * @return the number of sent updates
+     */
+    public long getSentUpdates() {
+        return sentUpdates.sum();
+    }
+
+    /**
+     * Gets the number of tab list updates that were skipped because nothing visible changed.
+     *
+     * @return the number of skipped updates
+     */
+    public long getSkippedUpdates() {
+        return skippedUpdates.sum();
+    }
+
+    /**
+     * Gets the number of players currently tracked.
+     *
+     * @return the number of tracked players
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the entry of a player, creating it if the player is not tracked yet.
+     *
+     * @param player the player
+     * @return the player's entry
+     */
+    private Entry getOrCreate(Player player) {
+        return entries.computeIfAbsent(player.getUniqueId(), id -> new Entry(Component.text(player.getName())));
+    }
+
+    /**
+     * The last rendered tab list state of a single player.
+     */
+    private static final class Entry {
+        private final Component name;
+        private Component suffix;
+        private int tier = -1;
+
+        private Entry(Component name) {
+            this.name = name;
+        }
+
+        private void reset() {
+            suffix = null;
+            tier = -1;
+        }
+    }
+}
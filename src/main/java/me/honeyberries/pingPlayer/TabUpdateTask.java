@@ -1,76 +1,344 @@
 package me.honeyberries.pingPlayer;
 
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * A task that updates the tab list names of players based on their ping.
  * This task is run periodically to ensure the tab list is up-to-date.
+ * When sharding is enabled, each run only updates one shard of the online players.
+ * The players of every shard are kept in their own list, maintained on join and quit,
+ * so a run only walks the players it updates.
+ * On Folia, every player gets their own timer on their entity scheduler instead,
+ * so each player is updated by the region thread that owns them.
+ * In the team display mode, the tier is shown through {@link TierTeams} instead of the tab list name,
+ * and in the viewer display mode through {@link ViewerTeams}, only to the players allowed to view ping.
  */
 public class TabUpdateTask implements Runnable {
 
-    private final PingPlayer plugin = PingPlayer.getInstance();
-    private final PingSettings settings = PingSettings.getInstance();
+    private final Supplier<PingSettings.Snapshot> settings;
+    private final TabRenderCache renderCache;
+    private final PingSampler sampler;
+    private final PermissionCache permissions;
+    private final HistoryStore historyStore;
+    private final LatencyHistogram histogram;
+    private final Profiler profiler;
+    private final TierTeams tierTeams;
+    private final ViewerTeams viewerTeams;
+    private final LagSpikeDetector lagSpikeDetector;
+
+    // The display mode the task is running in, which falls back to the name mode where teams are not supported
+    private volatile PingSettings.DisplayMode activeMode = PingSettings.DisplayMode.NAME;
+
+    // The shared timer used on Paper
+    private Task timer;
+
+    // The per-player timers used on Folia
+    private final Map<UUID, Task> playerTasks = new ConcurrentHashMap<>();
+
+    // The online players of every shard, by entity id modulo the shard count; only used on Paper, from the main thread
+    private final List<Map<UUID, Player>> shards = new ArrayList<>();
+
+    // The shard that will be updated on the next run
+    private int nextShard;
+
+    // How long the runs took, for the metrics endpoint
+    private final DurationCounter runDurations = new DurationCounter();
+
+    /**
+     * Creates the tab update task of the running plugin.
+     */
+    public TabUpdateTask() {
+        this(PingSettings.getInstance()::getSnapshot, PingPlayer.getInstance().getTabRenderCache(),
+                PingPlayer.getInstance().getPingSampler(), PingPlayer.getInstance().getPermissionCache(),
+                PingPlayer.getInstance().getHistoryStore(), PingPlayer.getInstance().getLatencyHistogram(),
+                PingPlayer.getInstance().getProfiler(), PingPlayer.getInstance().getTierTeams(),
+                PingPlayer.getInstance().getViewerTeams(), PingPlayer.getInstance().getLagSpikeDetector());
+    }
+
+    /**
+     * Creates a tab update task with the given state, so it can also run without a server, like in the load simulator.
+     * Without a server, {@link #run()} has to be called directly, as the task cannot be scheduled.
+     *
+     * @param settings     supplies the current settings snapshot
+     * @param renderCache  the cache of the last rendered tab list names
+     * @param sampler      the rolling ping history of every player
+     * @param permissions  the permission cache
+     * @param historyStore the persistent ping history
+     * @param histogram    the server-wide latency histogram
+     * @param profiler     the profiler that measures the runs
+     * @param tierTeams    the tier teams of the team display mode
+     * @param viewerTeams  the per-viewer tier teams of the viewer display mode
+     * @param lagSpikeDetector the detector that checks every sample for lag spikes
+     */
+    public TabUpdateTask(Supplier<PingSettings.Snapshot> settings, TabRenderCache renderCache, PingSampler sampler,
+                         PermissionCache permissions, HistoryStore historyStore, LatencyHistogram histogram, Profiler profiler,
+                         TierTeams tierTeams, ViewerTeams viewerTeams, LagSpikeDetector lagSpikeDetector) {
+        this.settings = settings;
+        this.renderCache = renderCache;
+        this.sampler = sampler;
+        this.permissions = permissions;
+        this.historyStore = historyStore;
+        this.histogram = histogram;
+        this.profiler = profiler;
+        this.tierTeams = tierTeams;
+        this.viewerTeams = viewerTeams;
+        this.lagSpikeDetector = lagSpikeDetector;
+    }
+
+    /**
+     * Starts updating the tab list with the cadence and display mode from the settings.
+     * Any running timers are cancelled first, so this can be called again after a reload.
+     */
+    public void start() {
+        stop();
+        switchMode(settings.get().tab().displayMode());
+
+        if (Scheduler.isFolia()) {
+            Bukkit.getOnlinePlayers().forEach(this::startFor);
+        } else {
+            rebuildShards(settings.get().tab().shards());
+            // The task records its own profiler section, so the scheduler does not measure it again
+            timer = Scheduler.runTaskTimer(this, 1, settings.get().tab().period(), null);
+        }
+    }
+
+    /**
+     * Switches to another display mode and undoes what the previous mode showed.
+     * Called by {@link #start()}; call it directly when the task is run without being started.
+     * The team and viewer modes fall back to the name mode if the server does not support scoreboard teams.
+     *
+     * @param mode the configured display mode
+     */
+    public void switchMode(PingSettings.DisplayMode mode) {
+        if (mode != PingSettings.DisplayMode.NAME && !TierTeams.isSupported()) {
+            mode = PingSettings.DisplayMode.NAME;
+        }
+        if (mode == activeMode) {
+            return;
+        }
+
+        if (activeMode == PingSettings.DisplayMode.TEAM) {
+            tierTeams.clear();
+        }
+        if (activeMode == PingSettings.DisplayMode.VIEWER) {
+            viewerTeams.clear();
+        }
+        if (mode != PingSettings.DisplayMode.NAME) {
+            // A custom tab list name hides the team color and suffix, so reset it to the plain name
+            Bukkit.getOnlinePlayers().forEach(player -> player.playerListName(null));
+        }
+
+        // Make the name mode send every tab list name again
+        renderCache.invalidateAll();
+        activeMode = mode;
+    }
+
+    /**
+     * Gets the display mode the task is running in.
+     *
+     * @return the active display mode
+     */
+    public PingSettings.DisplayMode getActiveMode() {
+        return activeMode;
+    }
 
     /**
-     * The main logic of the task that updates the tab list names for all online players
+     * Stops all tab list updates and cancels every timer.
+     */
+    public void stop() {
+        if (timer != null && !timer.isCancelled()) {
+            timer.cancel();
+        }
+        timer = null;
+
+        playerTasks.values().forEach(Task::cancel);
+        playerTasks.clear();
+    }
+
+    /**
+     * Starts updating a player who joined. On Folia, this starts the per-player timer,
+     * with the first run offset by the player's shard, so the players are spread evenly over the interval.
+     * On other servers, the player is added to their shard of the shared timer.
+     *
+     * @param player the player to start updating
+     */
+    public void startFor(Player player) {
+        if (!Scheduler.isFolia()) {
+            track(player);
+            return;
+        }
+
+        stopFor(player);
+
+        PingSettings.Snapshot config = settings.get();
+        int interval = config.tab().interval();
+        int shards = config.tab().shards();
+        long delay = 1 + (long) Math.floorMod(player.getEntityId(), shards) * (interval / shards);
+
+        Task task = Scheduler.runEntityTaskTimer(player, () -> {
+            long start = System.nanoTime();
+            long allocated = profiler.allocatedBytes();
+            update(player);
+            runDurations.record(profiler.record(Profiler.Section.TAB_UPDATE, start, allocated, 1));
+        }, delay, interval, null);
+        if (task != null) {
+            playerTasks.put(player.getUniqueId(), task);
+        }
+    }
+
+    /**
+     * Stops updating a player who quit: cancels their per-player timer, if there is one,
+     * and removes them from their shard.
+     *
+     * @param player the player to stop updating
+     */
+    public void stopFor(Player player) {
+        untrack(player);
+        Task task = playerTasks.remove(player.getUniqueId());
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Adds a player to their shard of the shared timer. {@link #startFor(Player)} calls this on Paper;
+     * call it directly when the task is run without being started.
+     *
+     * @param player the player
+     */
+    public void track(Player player) {
+        if (!shards.isEmpty()) {
+            shards.get(Math.floorMod(player.getEntityId(), shards.size())).put(player.getUniqueId(), player);
+        }
+    }
+
+    /**
+     * Removes a player from their shard of the shared timer.
+     *
+     * @param player the player
+     */
+    public void untrack(Player player) {
+        if (!shards.isEmpty()) {
+            shards.get(Math.floorMod(player.getEntityId(), shards.size())).remove(player.getUniqueId());
+        }
+    }
+
+    /**
+     * The main logic of the task that updates the tab list names for the online players of the current shard
      * who have the permission to view ping.
      */
     @Override
     public void run() {
-        // Update the tab list for all online players with the permission to view ping
-        if (settings.getShowPingOnTab()) {
-                Bukkit.getOnlinePlayers().stream()
-                    .filter(player -> player.hasPermission("pingplayer.viewping"))
-                    .forEach(this::updateTabListName);
-            }
+        long start = System.nanoTime();
+        long allocated = profiler.allocatedBytes();
+        int shardCount = settings.get().tab().shards();
+        if (shards.size() != shardCount) {
+            rebuildShards(shardCount);
+        }
+        int shard = nextShard % shardCount;
+        nextShard = (shard + 1) % shardCount;
 
+        // Update the tab list for the players of this shard with the permission to view ping
+        Map<UUID, Player> players = shards.get(shard);
+        for (Player player : players.values()) {
+            update(player);
+        }
+        int updated = players.size();
+
+        // Send the tier changes of this run to the viewers. Without changes, joins or quits, the viewers are
+        // only checked for permission and scoreboard changes once per rotation, after the last shard
+        if (activeMode == PingSettings.DisplayMode.VIEWER && (viewerTeams.needsFlush() || nextShard == 0)) {
+            viewerTeams.flush(Bukkit.getOnlinePlayers(), permissions);
+        }
+        runDurations.record(profiler.record(Profiler.Section.TAB_UPDATE, start, allocated, updated));
     }
 
     /**
-     * Updates the player's tab list name based on their ping.
+     * Sorts the online players into a number of shards, replacing the current ones.
+     * Called on start and when the shard count changed, so joins and quits only touch one shard.
      *
-     * @param player The player whose tab name is to be updated.
+     * @param shardCount the number of shards
      */
-    private void updateTabListName(Player player) {
-        int ping = player.getPing();
-        String playerName = player.getName();
-
-        // Get the color based on the ping
-        NamedTextColor color = getPingColor(ping);
+    private void rebuildShards(int shardCount) {
+        shards.clear();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new LinkedHashMap<>());
+        }
+        Bukkit.getOnlinePlayers().forEach(this::track);
+        nextShard = 0;
+    }
 
-        // Create the formatted tab name with ping in brackets and apply color
-        Component formattedTabName = Component.text(playerName)
-                .append(Component.text(" [" + ping + " ms]").color(color));
+    /**
+     * Gets how often and how long the task ran. On Folia, every per-player run counts separately.
+     *
+     * @return the run durations
+     */
+    public DurationCounter getRunDurations() {
+        return runDurations;
+    }
 
-        // Set the player's tab name using the Adventure API
-        player.playerListName(formattedTabName);
+    /**
+     * Samples the ping of a single player, stores it in the history and the latency histogram, checks it for lag spikes
+     * and updates their tab list name
+     * or tier team, if ping is shown on the tab list and the player has the permission to view ping.
+     * In the viewer display mode, every player's tier is updated, as the permission is checked for the viewers instead.
+     *
+     * @param player the player to update
+     */
+    private void update(Player player) {
+        PingSettings.Snapshot config = settings.get();
+        int ping = player.getPing();
+        int smoothedPing = sampler.record(player, ping);
+        historyStore.record(player, ping);
+        histogram.record(player, ping, config.tiers().classifier());
+        lagSpikeDetector.record(player, ping);
 
+        boolean shown = config.tab().showPingOnTab() && permissions.has(player, PermissionCache.Permission.VIEWPING);
+        if (activeMode == PingSettings.DisplayMode.TEAM) {
+            if (shown) {
+                int hysteresis = config.sampler().smoothing() ? config.sampler().hysteresis() : 0;
+                tierTeams.update(player, config.tiers().classifier(), config.sampler().smoothing() ? smoothedPing : ping, hysteresis);
+            } else {
+                tierTeams.untrack(player);
+            }
+        } else if (activeMode == PingSettings.DisplayMode.VIEWER) {
+            if (config.tab().showPingOnTab()) {
+                int hysteresis = config.sampler().smoothing() ? config.sampler().hysteresis() : 0;
+                viewerTeams.update(player, config.tiers().classifier(), config.sampler().smoothing() ? smoothedPing : ping, hysteresis);
+            } else {
+                viewerTeams.remove(player);
+            }
+        } else if (shown) {
+            updateTabListName(player, config, config.sampler().smoothing() ? smoothedPing : ping);
+        }
     }
 
     /**
-     * Returns a color based on the ping value.
+     * Updates the player's tab list name based on their ping.
+     * Nothing is sent if the displayed ping and color are the same as last time.
      *
-     * @param ping The player's ping.
-     * @return The color to use for the tab list name.
+     * @param player The player whose tab name is to be updated.
+     * @param config The settings snapshot of this update.
+     * @param ping The ping to display, either raw or smoothed.
      */
-    private NamedTextColor getPingColor(int ping) {
-        List<Integer> pingThresholds = settings.getPingThresholds();
-
-        // Determine color based on ping value
-        if (ping <= pingThresholds.get(0)) {
-            return NamedTextColor.GREEN; // Green for excellent ping
-        } else if (ping <= pingThresholds.get(1)) {
-            return NamedTextColor.YELLOW; // Yellow for good ping
-        } else if (ping <= pingThresholds.get(2)) {
-            return NamedTextColor.GOLD; // Gold for medium ping
-        } else if (ping <= pingThresholds.get(3)) {
-            return NamedTextColor.RED; // Red for bad ping
-        } else {
-            return NamedTextColor.DARK_RED; // Dark Red for very bad ping
+    private void updateTabListName(Player player, PingSettings.Snapshot config, int ping) {
+        // Skip the update if nothing visible changed since the last one
+        int hysteresis = config.sampler().smoothing() ? config.sampler().hysteresis() : 0;
+        Component formattedTabName = renderCache.render(player, config.tiers().classifier(), ping, hysteresis);
+        if (formattedTabName == null) {
+            return;
         }
+
+        // Set the player's tab name using the Adventure API
+        player.playerListName(formattedTabName);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package me.honeyberries.pingPlayer;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shows the latency tier of every player through scoreboard teams instead of their tab list name.
+ * <p>
+ * One team is registered on the main scoreboard for every tier, with the tier color and the tier label as suffix.
+ * A player is only moved to another team when their tier changes, so the server sends packets for tier transitions
+ * instead of a new tab list name for every player on every update.
+ * The teams are registered again whenever the tiers change, like after a reload.
+ * <p>
+ * Folia does not support scoreboards, so this mode is only available on Paper.
+ */
+public class TierTeams {
+
+    // The prefix of the team names, followed by the tier index
+    private static final String TEAM_PREFIX = "pingplayer_";
+
+    // Folia has no scoreboards; detected here rather than through the Scheduler, so this also works without the plugin
+    private static final boolean SUPPORTED = !isFolia();
+
+    // The current tier of every player in a team
+    private final Map<UUID, Integer> tiers = new ConcurrentHashMap<>();
+
+    // Counters for team changes and updates where the tier stayed the same
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder skippedUpdates = new LongAdder();
+
+    // The registered teams, by tier index, and the classifier they were registered for
+    private List<Team> teams = List.of();
+    private LatencyClassifier registeredFor;
+
+    /**
+     * Checks whether the server supports scoreboard teams.
+     *
+     * @return true unless the server runs Folia
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Checks whether the server runs Folia.
+     *
+     * @return true if the Folia region classes are present
+     */
+    private static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Puts a player in the team of their tier, unless they are in it already.
+     * With a hysteresis margin, the tier only changes once the ping crossed a boundary by that margin.
+     *
+     * @param player     the player
+     * @param classifier the classifier for the current tiers
+     * @param ping       the ping that decides the tier
+     * @param hysteresis the hysteresis margin in milliseconds, or 0 to disable it
+     */
+    public synchronized void update(Player player, LatencyClassifier classifier, int ping, int hysteresis) {
+        if (classifier != registeredFor) {
+            register(classifier);
+        }
+
+        Integer current = tiers.get(player.getUniqueId());
+        int tier = hysteresis > 0 && current != null
+                ? classifier.classify(ping, current, hysteresis)
+                : classifier.classify(ping);
+
+        if (current != null && current == tier) {
+            skippedUpdates.increment();
+            return;
+        }
+
+        // Adding the entry to the new team also removes it from the old one
+        teams.get(tier).addEntry(player.getName());
+        tiers.put(player.getUniqueId(), tier);
+        changes.increment();
+    }
+
+    /**
+     * Removes a player from their team. Called when the player quits.
+     *
+     * @param player the player
+     */
+    public synchronized void untrack(Player player) {
+        Integer tier = tiers.remove(player.getUniqueId());
+        if (tier != null && tier < teams.size()) {
+            teams.get(tier).removeEntry(player.getName());
+        }
+    }
+
+    /**
+     * Unregisters every team, which also removes all players from them.
+     * Called when the display mode changes and when the plugin is disabled.
+     */
+    public synchronized void clear() {
+        if (!teams.isEmpty()) {
+            unregisterAll(Bukkit.getScoreboardManager().getMainScoreboard());
+        }
+        teams = List.of();
+        registeredFor = null;
+        tiers.clear();
+    }
+
+    /**
+     * Gets the number of times a player was moved to another team.
+     *
+     * @return the number of team changes
+     */
+    public long getChanges() {
+        return changes.sum();
+    }
+
+    /**
+     * Gets the number of updates where the tier of the player did not change.
+     *
+     * @return the number of skipped updates
+     */
+    public long getSkippedUpdates() {
+        return skippedUpdates.sum();
+    }
+
+    /**
+     * Gets the number of players currently in a team.
+     *
+     * @return the number of tracked players
+     */
+    public int size() {
+        return tiers.size();
+    }
+
+    /**
+     * Registers one team for every tier of a classifier, replacing the teams of earlier tiers.
+     * The players are added to the new teams on their next update.
+     *
+     * @param classifier the classifier with the tiers
+     */
+    private void register(LatencyClassifier classifier) {
+        Scoreboard scoreboard = Bukkit.getScoreboardManager().getMainScoreboard();
+        unregisterAll(scoreboard);
+        tiers.clear();
+
+        // Set up a team with the color and label of every tier
+        List<Team> registered = new ArrayList<>(classifier.getTierCount());
+        for (int i = 0; i < classifier.getTierCount(); i++) {
+            LatencyClassifier.Tier tier = classifier.getTier(i);
+            Team team = scoreboard.registerNewTeam(TEAM_PREFIX + i);
+            team.color(tier.color());
+            team.suffix(Component.text(" [" + tier.label() + "]", tier.color()));
+            registered.add(team);
+        }
+
+        teams = registered;
+        registeredFor = classifier;
+    }
+
+    /**
+     * Unregisters every team of this plugin from a scoreboard, including teams left over from an earlier run.
+     *
+     * @param scoreboard the scoreboard
+     */
+    private static void unregisterAll(Scoreboard scoreboard) {
+        for (Team team : new ArrayList<>(scoreboard.getTeams())) {
+            if (team.getName().startsWith(TEAM_PREFIX)) {
+                team.unregister();
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package me.honeyberries.pingPlayer;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shows the latency tier of every player only to the viewers who are allowed to see ping.
+ * <p>
+ * Every online player with {@code pingplayer.viewping} gets their own scoreboard with one team per tier,
+ * like {@link TierTeams} registers on the main scoreboard. Everyone else keeps the main scoreboard,
+ * so they see plain names and receive no extra packets.
+ * <p>
+ * The tier of every player is classified once per update, and the tier changes are collected until the end of the run.
+ * {@link #flush(Iterable, PermissionCache)} then sends each viewer the changed entries in one batch per team,
+ * so a viewer gets at most one packet per tier and run, however many players changed tier.
+ * A run without tier changes, joins or quits only needs a flush to pick up permission and scoreboard changes,
+ * which {@link #needsFlush()} leaves to the caller's slower cadence.
+ * <p>
+ * A private scoreboard replaces the main scoreboard for its viewer, so viewers no longer see the sidebar,
+ * below-name objectives and teams of the main scoreboard. A viewer's scoreboard is therefore only set while they
+ * are on the main scoreboard: players another plugin gave a scoreboard keep it and are skipped until they are back
+ * on the main one.
+ * <p>
+ * Only used from the main thread. Folia does not support scoreboards, so this mode is only available on Paper.
+ */
+public class ViewerTeams {
+
+    // The prefix of the team names, followed by the tier index
+    private static final String TEAM_PREFIX = "pingplayer_";
+
+    // The current tier of every decorated player, by name, as the team entries are names
+    private final Map<String, Integer> tiers = new HashMap<>();
+
+    // The tier changes and removals of the current run, not yet sent to the viewers
+    private final Map<String, Integer> changed = new HashMap<>();
+    private final Set<String> removed = new HashSet<>();
+
+    // The scoreboard of every viewer
+    private final Map<UUID, Viewer> viewers = new HashMap<>();
+
+    // Whether a player joined or quit since the last flush
+    private boolean playersChanged;
+
+    // Counters for tier changes, batches and entries sent to viewers, and updates where the tier stayed the same
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder sentEntries = new LongAdder();
+    private final LongAdder skippedUpdates = new LongAdder();
+
+    // The classifier the tiers were classified with
+    private LatencyClassifier classifier;
+
+    /**
+     * Classifies the tier of a player and remembers the change for the next flush, if the tier changed.
+     * With a hysteresis margin, the tier only changes once the ping crossed a boundary by that margin.
+     *
+     * @param player     the player
+     * @param classifier the classifier for the current tiers
+     * @param ping       the ping that decides the tier
+     * @param hysteresis the hysteresis margin in milliseconds, or 0 to disable it
+     */
+    public void update(Player player, LatencyClassifier classifier, int ping, int hysteresis) {
+        if (classifier != this.classifier) {
+            reset(classifier);
+        }
+
+        String name = player.getName();
+        Integer current = tiers.get(name);
+        int tier = hysteresis > 0 && current != null
+                ? classifier.classify(ping, current, hysteresis)
+                : classifier.classify(ping);
+
+        if (current != null && current == tier) {
+            skippedUpdates.increment();
+            return;
+        }
+
+        tiers.put(name, tier);
+        changed.put(name, tier);
+        removed.remove(name);
+        changes.increment();
+    }
+
+    /**
+     * Stops decorating a player; their entry is removed from every viewer on the next flush.
+     * Called when the player quits or is no longer shown.
+     *
+     * @param player the player
+     */
+    public void remove(Player player) {
+        String name = player.getName();
+        if (tiers.remove(name) != null) {
+            changed.remove(name);
+            removed.add(name);
+        }
+    }
+
+    /**
+     * Notes that a player joined, so the next flush gives them a scoreboard if they may view ping.
+     *
+     * @param player the player
+     */
+    public void track(Player player) {
+        playersChanged = true;
+    }
+
+    /**
+     * Forgets a player who quit, both as a decorated player and as a viewer.
+     *
+     * @param player the player
+     */
+    public void untrack(Player player) {
+        remove(player);
+        viewers.remove(player.getUniqueId());
+        playersChanged = true;
+    }
+
+    /**
+     * Checks whether a tier changed, a player stopped being decorated, the tiers were replaced,
+     * or a player joined or quit since the last flush.
+     *
+     * @return true if the next flush has something to send
+     */
+    public boolean needsFlush() {
+        return playersChanged || !changed.isEmpty() || !removed.isEmpty();
+    }
+
+    /**
+     * Sends the tier changes of this run to the viewers. Players who gained the permission to view ping get
+     * their own scoreboard with every current tier, and players who lost it get the main scoreboard back.
+     * Called at the end of every run of the tab update task.
+     *
+     * @param players     the online players
+     * @param permissions the permission cache
+     */
+    public void flush(Iterable<? extends Player> players, PermissionCache permissions) {
+        Scoreboard main = Bukkit.getScoreboardManager().getMainScoreboard();
+
+        // Group the changes by team, so every viewer gets one batch per team
+        List<List<String>> added = new ArrayList<>();
+        if (classifier != null) {
+            for (int i = 0; i < classifier.getTierCount(); i++) {
+                added.add(new ArrayList<>());
+            }
+            changed.forEach((name, tier) -> added.get(tier).add(name));
+        }
+        List<String> removedNames = new ArrayList<>(removed);
+        changed.clear();
+        removed.clear();
+        playersChanged = false;
+
+        for (Player player : players) {
+            boolean allowed = permissions.has(player, PermissionCache.Permission.VIEWPING);
+            Viewer viewer = viewers.get(player.getUniqueId());
+
+            if (!allowed) {
+                // Give the player the main scoreboard back, if they were a viewer
+                if (viewer != null) {
+                    viewers.remove(player.getUniqueId());
+                    if (player.getScoreboard() == viewer.scoreboard) {
+                        player.setScoreboard(main);
+                    }
+                }
+                continue;
+            }
+
+            // Forget viewers another plugin gave a scoreboard since, rather than taking it away again
+            if (viewer != null && player.getScoreboard() != viewer.scoreboard) {
+                viewers.remove(player.getUniqueId());
+                viewer = null;
+            }
+
+            if (viewer == null || viewer.classifier != classifier) {
+                // New viewers and viewers of earlier tiers get a scoreboard with every current tier,
+                // but only players on the main scoreboard or their own, so scoreboards of other plugins are kept
+                if (viewer == null && player.getScoreboard() != main) {
+                    continue;
+                }
+                viewer = createViewer();
+                viewers.put(player.getUniqueId(), viewer);
+                player.setScoreboard(viewer.scoreboard);
+                continue;
+            }
+
+            for (int i = 0; i < added.size(); i++) {
+                send(viewer.teams.get(i), added.get(i), true);
+            }
+            if (!removedNames.isEmpty()) {
+                for (Team team : viewer.teams) {
+                    send(team, removedNames, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives every viewer the main scoreboard back and forgets all tiers.
+     * Called when the display mode changes and when the plugin is disabled.
+     */
+    public void clear() {
+        Scoreboard main = Bukkit.getScoreboardManager().getMainScoreboard();
+        viewers.forEach((uuid, viewer) -> {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null && player.getScoreboard() == viewer.scoreboard) {
+                player.setScoreboard(main);
+            }
+        });
+        viewers.clear();
+        reset(null);
+    }
+
+    /**
+     * Gets the number of times a player changed tier.
+     *
+     * @return the number of tier changes
+     */
+    public long getChanges() {
+        return changes.sum();
+    }
+
+    /**
+     * Gets the number of batches sent to viewers, each one team packet.
+     *
+     * @return the number of batches
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Gets the number of entries sent to viewers in all batches.
+     *
+     * @return the number of sent entries
+     */
+    public long getSentEntries() {
+        return sentEntries.sum();
+    }
+
+    /**
+     * Gets the number of updates where the tier of the player did not change.
+     *
+     * @return the number of skipped updates
+     */
+    public long getSkippedUpdates() {
+        return skippedUpdates.sum();
+    }
+
+    /**
+     * Gets the number of players who currently have their own scoreboard.
+     *
+     * @return the number of viewers
+     */
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    /**
+     * Forgets every tier, so all players are classified again. Existing viewers get a new scoreboard on the next flush.
+     *
+     * @param classifier the classifier of the new tiers, or null
+     */
+    private void reset(LatencyClassifier classifier) {
+        this.classifier = classifier;
+        tiers.clear();
+        changed.clear();
+        removed.clear();
+        playersChanged = true;
+    }
+
+    /**
+     * Creates the scoreboard of a new viewer, with a team for every tier that already holds every decorated player.
+     *
+     * @return the viewer
+     */
+    private Viewer createViewer() {
+        Scoreboard scoreboard = Bukkit.getScoreboardManager().getNewScoreboard();
+        List<Team> teams = new ArrayList<>();
+        List<List<String>> members = new ArrayList<>();
+
+        // Set up a team with the color and label of every tier
+        if (classifier != null) {
+            for (int i = 0; i < classifier.getTierCount(); i++) {
+                LatencyClassifier.Tier tier = classifier.getTier(i);
+                Team team = scoreboard.registerNewTeam(TEAM_PREFIX + i);
+                team.color(tier.color());
+                team.suffix(Component.text(" [" + tier.label() + "]", tier.color()));
+                teams.add(team);
+                members.add(new ArrayList<>());
+            }
+            tiers.forEach((name, tier) -> members.get(tier).add(name));
+        }
+
+        // The scoreboard is sent as a whole when it is set, so filling it now costs no extra packets
+        for (int i = 0; i < teams.size(); i++) {
+            if (!members.get(i).isEmpty()) {
+                teams.get(i).addEntries(members.get(i));
+            }
+        }
+        return new Viewer(scoreboard, teams, classifier);
+    }
+
+    /**
+     * Adds or removes a batch of entries of a team on a viewer's scoreboard.
+     *
+     * @param team    the team
+     * @param entries the entries, may be empty
+     * @param add     true to add the entries, false to remove them
+     */
+    private void send(Team team, List<String> entries, boolean add) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        if (add) {
+            team.addEntries(entries);
+        } else if (!team.removeEntries(entries)) {
+            // Nothing was removed from this team, so no packet was sent
+            return;
+        }
+        batches.increment();
+        sentEntries.add(entries.size());
+    }
+
+    /**
+     * The scoreboard of one viewer.
+     *
+     * @param scoreboard the viewer's scoreboard
+     * @param teams      the teams of the tiers, by tier index
+     * @param classifier the classifier the teams were registered for
+     */
+    private record Viewer(Scoreboard scoreboard, List<Team> teams, LatencyClassifier classifier) {
+    }
+}
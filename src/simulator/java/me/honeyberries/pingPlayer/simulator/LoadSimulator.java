@@ -0,0 +1,769 @@
+package me.honeyberries.pingPlayer.simulator;
+
+import me.honeyberries.pingPlayer.AddressIndex;
+import me.honeyberries.pingPlayer.HistoryStore;
+import me.honeyberries.pingPlayer.LagSpikeDetector;
+import me.honeyberries.pingPlayer.LatencyClassifier;
+import me.honeyberries.pingPlayer.LatencyHistogram;
+import me.honeyberries.pingPlayer.PermissionCache;
+import me.honeyberries.pingPlayer.PingHistory;
+import me.honeyberries.pingPlayer.PingSampler;
+import me.honeyberries.pingPlayer.PingSettings;
+import me.honeyberries.pingPlayer.PlayerNameIndex;
+import me.honeyberries.pingPlayer.Profiler;
+import me.honeyberries.pingPlayer.TabRenderCache;
+import me.honeyberries.pingPlayer.TabUpdateTask;
+import me.honeyberries.pingPlayer.TierTeams;
+import me.honeyberries.pingPlayer.ViewerTeams;
+import me.honeyberries.pingPlayer.fixtures.FakePlayers;
+import me.honeyberries.pingPlayer.fixtures.FakeScoreboards;
+import me.honeyberries.pingPlayer.fixtures.FakeServer;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Soak-tests the plugin without a Minecraft server or clients.
+ * <p>
+ * The simulator builds the plugin's state the way {@code PingPlayer.onEnable} does and drives it tick by tick:
+ * fake players join and quit like {@code PlayerConnectionListener} handles them, the real {@link TabUpdateTask}
+ * runs with the configured period and shards, and commands are simulated through the components their handlers use.
+ * Pings come from a synthetic distribution or a recorded trace (see {@link PingTrace}).
+ * Synthetic pings change like a vanilla server reports them: once per keep-alive, averaged with the previous value.
+ * <p>
+ * Ticks are simulated as fast as possible, so only the plugin's own work is timed; the tick times in the report
+ * are the time the plugin would add to a server tick. Chat messages are not rendered.
+ * <p>
+ * Run it with {@code mvn -Psimulator test-compile exec:java -Dsimulator.args="--players 1000 --minutes 30"}.
+ */
+public final class LoadSimulator {
+
+    private static final int TICKS_PER_SECOND = 20;
+
+    // The number of worst players in /pingplayer stats
+    private static final int WORST_PLAYERS = 5;
+
+    private static final String USAGE = """
+            Options:
+              --players <n>                 players online at the start (default 500)
+              --minutes <n>                 simulated minutes (default 10; a trace runs to its last event)
+              --warmup-seconds <n>          simulated seconds left out of the report (default 60)
+              --interval <ticks>            tab-update.interval-ticks (default 20)
+              --shards <n>                  tab-update.shards (default 1)
+              --distribution <name>         lognormal, uniform or bimodal (default lognormal)
+              --trace <file>                replay a recorded trace instead of synthetic pings
+              --churn <fraction>            share of the players replaced per minute (default 0.05)
+              --keepalive-seconds <n>       seconds between ping updates of a player (default 15)
+              --spike-chance <fraction>     chance of a lag spike per keep-alive (default 0.01)
+              --smoothing                   enable smoothing with the default alpha and hysteresis
+              --display-mode <mode>         tab-update.display-mode, name, team or viewer (default name)
+              --viewers <fraction>          share of the players with pingplayer.viewping (default 1)
+              --completions-per-second <n>  name completions (default 2)
+              --lookups-per-second <n>      /ping <player> and /ping <player> stats (default 1)
+              --stats-per-second <n>        /pingplayer stats (default 0.1)
+              --history-dir <dir>           run the history store in this folder
+              --seed <n>                    random seed (default 1)""";
+
+    private final Options options;
+    private final Random random;
+    private final PingSettings.Snapshot settings;
+    private final com.sun.management.ThreadMXBean threads;
+
+    // The plugin's state, as created by PingPlayer
+    private final TabRenderCache renderCache = new TabRenderCache();
+    private final PingSampler sampler = new PingSampler();
+    private final PermissionCache permissions = new PermissionCache();
+    private final PlayerNameIndex nameIndex = new PlayerNameIndex();
+    private final AddressIndex addressIndex = new AddressIndex();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final Profiler profiler = new Profiler();
+    private final TierTeams tierTeams = new TierTeams();
+    private final ViewerTeams viewerTeams = new ViewerTeams();
+    private final HistoryStore historyStore;
+    private final LagSpikeDetector lagSpikeDetector;
+    private final TabUpdateTask tabUpdateTask;
+
+    // The online players, in the same order as the fake server's list
+    private final List<Player> online = FakeServer.getOnlinePlayers();
+    private final List<SimulatedPlayer> players = new ArrayList<>();
+    private final Map<String, SimulatedPlayer> playersByName = new HashMap<>();
+    private int nextEntityId;
+
+    // The simulated tick, which is also the clock of the lag spike detector
+    private long currentTick;
+
+    // The measurements
+    private final Measurement tabUpdates = new Measurement("Tab update task");
+    private final Measurement connections = new Measurement("Joins and quits");
+    private final Measurement completions = new Measurement("Name completion");
+    private final Measurement lookups = new Measurement("/ping <player> [stats]");
+    private final Measurement stats = new Measurement("/pingplayer stats");
+    private final Measurement alerts = new Measurement("Lag alert flush");
+    private long[] tickNanos;
+    private long tickAllocated;
+    private long joins;
+    private long quits;
+    private long tabListUpdatesOfQuitPlayers;
+    private long tabListUpdatesAtWarmup;
+    private long sentAtWarmup;
+    private long skippedAtWarmup;
+    private long teamPacketsAtWarmup;
+    private long teamChangesAtWarmup;
+    private long teamSkippedAtWarmup;
+    private long viewerBatchesAtWarmup;
+    private long viewerEntriesAtWarmup;
+    private long spikesAtWarmup;
+    private long sustainedAtWarmup;
+    private long alertsSentAtWarmup;
+    private long alertsDelayedAtWarmup;
+    private boolean measuring;
+
+    private LoadSimulator(Options options) throws IOException {
+        this.options = options;
+        this.random = new Random(options.seed);
+
+        settings = loadSettings(options);
+
+        // Apply the settings like PingPlayer.applySettings does
+        sampler.setWindowSize(settings.sampler().windowSize());
+        sampler.setSmoothingAlpha(settings.sampler().alpha());
+        permissions.setRefreshSeconds(settings.commands().permissionRefreshSeconds());
+
+        Logger logger = Logger.getLogger("PingPlayer");
+        // Without a history folder the store is never started, so its folder is never created
+        Path historyDir = options.historyDir != null ? options.historyDir : Path.of("history");
+        historyStore = new HistoryStore(historyDir, logger);
+        historyStore.configure(settings);
+        if (settings.history().enabled()) {
+            historyStore.start();
+        }
+
+        // Alerts are only counted, so they do not drown the report
+        Logger alertLogger = Logger.getLogger("PingPlayer.LagAlerts");
+        alertLogger.setUseParentHandlers(false);
+        lagSpikeDetector = new LagSpikeDetector(() -> currentTick * (1_000_000_000L / TICKS_PER_SECOND), permissions, alertLogger);
+        lagSpikeDetector.configure(settings);
+
+        tabUpdateTask = new TabUpdateTask(() -> settings, renderCache, sampler, permissions, historyStore, histogram, profiler,
+                tierTeams, viewerTeams, lagSpikeDetector);
+        tabUpdateTask.switchMode(settings.tab().displayMode());
+
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sunBean
+                && sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+            bean = sunBean;
+        }
+        threads = bean;
+    }
+
+    /**
+     * Parses the bundled config.yml the way the plugin does and applies the options on top of it.
+     * The audit log is not simulated, and lag alerts are always on, so their cost is part of the report.
+     *
+     * @param options the command line options
+     * @return the settings
+     * @throws IOException if the bundled config.yml could not be read
+     */
+    private static PingSettings.Snapshot loadSettings(Options options) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        try (InputStream in = LoadSimulator.class.getResourceAsStream("/config.yml")) {
+            if (in == null) {
+                throw new IOException("config.yml is not on the class path");
+            }
+            config.loadFromString(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Could not parse config.yml: " + e.getMessage(), e);
+        }
+
+        config.set("show-ping-on-tab", true);
+        config.set("tab-update.interval-ticks", options.interval);
+        config.set("tab-update.shards", options.shards);
+        config.set("tab-update.display-mode", options.displayMode.getKey());
+        config.set("smoothing.enabled", options.smoothing);
+        config.set("history-store.enabled", options.historyDir != null);
+        config.set("audit-log.enabled", false);
+        config.set("lag-alerts.enabled", true);
+        return PingSettings.getInstance().parse(config, Logger.getLogger("PingPlayer"));
+    }
+
+    /**
+     * Runs the simulator.
+     *
+     * @param args the options, see {@link #USAGE}
+     * @throws IOException if the trace or the bundled config.yml could not be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (Arrays.asList(args).contains("--help")) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+
+        FakeServer.install();
+        LoadSimulator simulator = new LoadSimulator(options);
+        try {
+            simulator.run();
+            simulator.report(System.out);
+        } finally {
+            simulator.historyStore.stop();
+        }
+    }
+
+    /**
+     * Simulates all ticks.
+     *
+     * @throws IOException if the trace could not be read
+     */
+    private void run() throws IOException {
+        PingTrace trace = options.trace != null ? PingTrace.load(options.trace) : null;
+        long ticks = trace != null ? trace.lastTick() + 1 : options.minutes * 60L * TICKS_PER_SECOND;
+        long warmupTicks = Math.min(ticks - 1, options.warmupSeconds * (long) TICKS_PER_SECOND);
+        tickNanos = new long[(int) (ticks - warmupTicks)];
+
+        List<PingTrace.Event> events = new ArrayList<>();
+        int keepAliveTicks = Math.max(1, options.keepAliveSeconds * TICKS_PER_SECOND);
+
+        for (long tick = 0; tick < ticks; tick++) {
+            currentTick = tick;
+            if (tick == warmupTicks) {
+                startMeasuring();
+            }
+            long nanos = 0;
+            long allocated = allocatedBytes();
+
+            // Joins, quits and the pings players report
+            if (trace != null) {
+                events.clear();
+                trace.eventsAt(tick, events);
+                for (PingTrace.Event event : events) {
+                    nanos += replay(event);
+                }
+            } else {
+                if (tick == 0) {
+                    for (int i = 0; i < options.players; i++) {
+                        nanos += join(FakePlayers.randomName(random), options.distribution.baseline(random));
+                    }
+                } else if (tick % TICKS_PER_SECOND == 0) {
+                    nanos += churn();
+                }
+                updatePings(tick, keepAliveTicks);
+            }
+
+            // The tab update task, scheduled every period
+            if (tick % settings.tab().period() == 0) {
+                long start = System.nanoTime();
+                long startAllocated = allocatedBytes();
+                tabUpdateTask.run();
+                nanos += tabUpdates.record(start, startAllocated, online.size());
+            }
+
+            // The lag alerts, sent once per alert window
+            if (tick > 0 && tick % (settings.alerts().windowSeconds() * (long) TICKS_PER_SECOND) == 0) {
+                long start = System.nanoTime();
+                long startAllocated = allocatedBytes();
+                lagSpikeDetector.flush();
+                nanos += alerts.record(start, startAllocated, online.size());
+            }
+
+            // Commands, at their configured rates
+            nanos += simulateCommands();
+
+            if (measuring) {
+                tickNanos[(int) (tick - warmupTicks)] = nanos;
+                tickAllocated += allocatedBytes() - allocated;
+            }
+        }
+    }
+
+    /**
+     * Applies one event of a recorded trace.
+     *
+     * @param event the event
+     * @return the time the plugin spent on it, in nanoseconds
+     */
+    private long replay(PingTrace.Event event) {
+        SimulatedPlayer player = playersByName.get(event.name());
+        if (event.ping() == PingTrace.QUIT) {
+            return player != null ? quit(player) : 0;
+        }
+
+        long nanos = 0;
+        if (player == null) {
+            nanos = join(event.name(), event.ping());
+            player = playersByName.get(event.name());
+        }
+        FakePlayers.setPing(player.player, event.ping());
+        return nanos;
+    }
+
+    /**
+     * Replaces a share of the players, once per second.
+     *
+     * @return the time the plugin spent on the joins and quits, in nanoseconds
+     */
+    private long churn() {
+        double expected = options.players * options.churn / 60;
+        int replaced = (int) expected + (random.nextDouble() < expected - (int) expected ? 1 : 0);
+
+        long nanos = 0;
+        for (int i = 0; i < replaced && !players.isEmpty(); i++) {
+            nanos += quit(players.get(random.nextInt(players.size())));
+            nanos += join(FakePlayers.randomName(random), options.distribution.baseline(random));
+        }
+        return nanos;
+    }
+
+    /**
+     * Updates the reported ping of the players whose keep-alive is due.
+     * Like a vanilla server, the reported ping moves a quarter of the way to the measured round trip.
+     *
+     * @param tick           the current tick
+     * @param keepAliveTicks the ticks between two keep-alives of a player
+     */
+    private void updatePings(long tick, int keepAliveTicks) {
+        for (SimulatedPlayer player : players) {
+            if ((tick + player.keepAlivePhase) % keepAliveTicks != 0) {
+                continue;
+            }
+
+            if (tick >= player.spikeUntil && random.nextDouble() < options.spikeChance) {
+                player.spikeUntil = tick + (3 + random.nextInt(28)) * (long) TICKS_PER_SECOND;
+                player.spikeFactor = 3 + random.nextDouble() * 7;
+            }
+
+            double roundTrip = player.baseline * Math.exp(0.15 * random.nextGaussian());
+            if (tick < player.spikeUntil) {
+                roundTrip *= player.spikeFactor;
+            }
+            player.reported = (int) ((player.reported * 3L + (long) roundTrip) / 4);
+            FakePlayers.setPing(player.player, player.reported);
+        }
+    }
+
+    /**
+     * Simulates the commands that are due this tick.
+     *
+     * @return the time the plugin spent on them, in nanoseconds
+     */
+    private long simulateCommands() {
+        long nanos = 0;
+
+        for (int i = due(options.completionsPerSecond); i > 0 && !players.isEmpty(); i--) {
+            // A player typed the first one or two letters of a name
+            String name = randomPlayer().player.getName();
+            String prefix = name.substring(0, 1 + random.nextInt(2)).toLowerCase(Locale.ROOT);
+
+            long start = System.nanoTime();
+            long allocated = allocatedBytes();
+            List<String> result = nameIndex.complete(prefix, settings.commands().completionLimit());
+            nanos += completions.record(start, allocated, result.size());
+        }
+
+        for (int i = due(options.lookupsPerSecond); i > 0 && !players.isEmpty(); i--) {
+            Player target = randomPlayer().player;
+
+            long start = System.nanoTime();
+            long allocated = allocatedBytes();
+            LatencyClassifier classifier = settings.tiers().classifier();
+            LatencyClassifier.Tier tier = classifier.getTier(classifier.classify(target.getPing()));
+            PingHistory.PingStats targetStats = sampler.getStats(target);
+            nanos += lookups.record(start, allocated, tier != null && targetStats != null ? 1 : 0);
+        }
+
+        for (int i = due(options.statsPerSecond); i > 0; i--) {
+            long start = System.nanoTime();
+            long allocated = allocatedBytes();
+            LatencyHistogram.Summary summary = histogram.summary(WORST_PLAYERS);
+            nanos += stats.record(start, allocated, summary.players());
+        }
+        return nanos;
+    }
+
+    /**
+     * Lets a player join and tracks them like PlayerConnectionListener does.
+     *
+     * @param name     the player name
+     * @param baseline the baseline ping of the player in milliseconds
+     * @return the time the plugin spent on the join, in nanoseconds
+     */
+    private long join(String name, int baseline) {
+        SimulatedPlayer player = new SimulatedPlayer(FakePlayers.create(name, nextEntityId++), baseline,
+                random.nextInt(Math.max(1, options.keepAliveSeconds * TICKS_PER_SECOND)));
+        FakePlayers.setPing(player.player, baseline);
+        if (random.nextDouble() >= options.viewers) {
+            FakePlayers.setPermission(player.player, PermissionCache.Permission.VIEWPING.getNode(), false);
+        }
+        player.index = players.size();
+        players.add(player);
+        playersByName.put(name, player);
+        online.add(player.player);
+        joins++;
+
+        long start = System.nanoTime();
+        long allocated = allocatedBytes();
+        renderCache.track(player.player);
+        sampler.track(player.player);
+        permissions.refresh(player.player);
+        nameIndex.add(name);
+        addressIndex.add(player.player);
+        viewerTeams.track(player.player);
+        tabUpdateTask.track(player.player);
+        return connections.record(start, allocated, 1);
+    }
+
+    /**
+     * Lets a player quit and releases their state like PlayerConnectionListener does.
+     *
+     * @param player the player
+     * @return the time the plugin spent on the quit, in nanoseconds
+     */
+    private long quit(SimulatedPlayer player) {
+        long start = System.nanoTime();
+        long allocated = allocatedBytes();
+        tabUpdateTask.untrack(player.player);
+        renderCache.untrack(player.player);
+        tierTeams.untrack(player.player);
+        viewerTeams.untrack(player.player);
+        sampler.untrack(player.player);
+        permissions.untrack(player.player);
+        nameIndex.remove(player.player.getName());
+        addressIndex.remove(player.player);
+        historyStore.untrack(player.player);
+        histogram.untrack(player.player);
+        lagSpikeDetector.untrack(player.player);
+        long nanos = connections.record(start, allocated, 1);
+
+        // Swap the last player into the free slot, in both lists
+        int last = players.size() - 1;
+        SimulatedPlayer moved = players.get(last);
+        players.set(player.index, moved);
+        online.set(player.index, moved.player);
+        moved.index = player.index;
+        players.remove(last);
+        online.remove(last);
+        playersByName.remove(player.player.getName());
+
+        tabListUpdatesOfQuitPlayers += FakePlayers.getTabListUpdates(player.player);
+        quits++;
+        return nanos;
+    }
+
+    /**
+     * Resets the measurements at the end of the warmup.
+     */
+    private void startMeasuring() {
+        measuring = true;
+        tabListUpdatesAtWarmup = tabListUpdates();
+        sentAtWarmup = renderCache.getSentUpdates();
+        skippedAtWarmup = renderCache.getSkippedUpdates();
+        teamPacketsAtWarmup = FakeScoreboards.getTeamPackets();
+        teamChangesAtWarmup = tierTeams.getChanges();
+        teamSkippedAtWarmup = tierTeams.getSkippedUpdates();
+        viewerBatchesAtWarmup = viewerTeams.getBatches();
+        viewerEntriesAtWarmup = viewerTeams.getSentEntries();
+        spikesAtWarmup = lagSpikeDetector.getSpikes();
+        sustainedAtWarmup = lagSpikeDetector.getSustained();
+        alertsSentAtWarmup = lagSpikeDetector.getAlertsSent();
+        alertsDelayedAtWarmup = lagSpikeDetector.getAlertsDelayed();
+        for (Measurement measurement : List.of(tabUpdates, connections, completions, lookups, stats, alerts)) {
+            measurement.reset();
+        }
+    }
+
+    /**
+     * Prints the report.
+     *
+     * @param out the stream to print to
+     */
+    private void report(PrintStream out) {
+        long[] sorted = tickNanos.clone();
+        Arrays.sort(sorted);
+        double seconds = (double) sorted.length / TICKS_PER_SECOND;
+
+        out.println();
+        out.println("PingPlayer load simulation");
+        out.printf(Locale.ROOT, "  %d ticks measured (%.0f s), %d players online at the end, %d joins and %d quits in total%n",
+                sorted.length, seconds, players.size(), joins, quits);
+        out.printf(Locale.ROOT, "  Pings: %s, tab update every %d ticks in %d shard(s), %s display mode, smoothing %s%n",
+                options.trace != null ? "trace " + options.trace : options.distribution.name().toLowerCase(Locale.ROOT),
+                settings.tab().interval(), settings.tab().shards(), tabUpdateTask.getActiveMode().getKey(),
+                settings.sampler().smoothing() ? "on" : "off");
+
+        out.println();
+        out.println("Plugin time per tick:");
+        out.printf(Locale.ROOT, "  p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n",
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)), millis(percentile(sorted, 0.99)),
+                millis(percentile(sorted, 0.999)), millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+        if (threads != null) {
+            out.printf(Locale.ROOT, "  allocated %.0f bytes per tick%n", sorted.length == 0 ? 0.0 : (double) tickAllocated / sorted.length);
+        }
+
+        long packets = tabListUpdates() - tabListUpdatesAtWarmup;
+        long sent = renderCache.getSentUpdates() - sentAtWarmup;
+        long skipped = renderCache.getSkippedUpdates() - skippedAtWarmup;
+        out.println();
+        out.println("Tab list updates (packet equivalents):");
+        out.printf(Locale.ROOT, "  %d sent (%.1f per second), %d skipped as unchanged (%.1f%%)%n",
+                packets, packets / Math.max(seconds, 1e-9), skipped, sent + skipped == 0 ? 0.0 : 100.0 * skipped / (sent + skipped));
+
+        if (tabUpdateTask.getActiveMode() == PingSettings.DisplayMode.TEAM) {
+            long teamPackets = FakeScoreboards.getTeamPackets() - teamPacketsAtWarmup;
+            long changes = tierTeams.getChanges() - teamChangesAtWarmup;
+            long unchanged = tierTeams.getSkippedUpdates() - teamSkippedAtWarmup;
+            out.println();
+            out.println("Tier team updates (packets per viewer):");
+            out.printf(Locale.ROOT, "  %d team changes, %d packets (%.1f per second), %d updates with an unchanged tier (%.1f%%)%n",
+                    changes, teamPackets, teamPackets / Math.max(seconds, 1e-9), unchanged,
+                    changes + unchanged == 0 ? 0.0 : 100.0 * unchanged / (changes + unchanged));
+        }
+
+        if (tabUpdateTask.getActiveMode() == PingSettings.DisplayMode.VIEWER) {
+            long teamPackets = FakeScoreboards.getTeamPackets() - teamPacketsAtWarmup;
+            long batches = viewerTeams.getBatches() - viewerBatchesAtWarmup;
+            long entries = viewerTeams.getSentEntries() - viewerEntriesAtWarmup;
+            out.println();
+            out.printf(Locale.ROOT, "Viewer team updates (%d viewers, packets each to one viewer):%n", viewerTeams.getViewerCount());
+            out.printf(Locale.ROOT, "  %d batches with %d entries, %d packets in total (%.1f per second)%n",
+                    batches, entries, teamPackets, teamPackets / Math.max(seconds, 1e-9));
+        }
+
+        out.println();
+        out.println("Lag alerts:");
+        out.printf(Locale.ROOT, "  %d spikes and %d sustained high latency events, %d alerts sent, %d held back by the limit%n",
+                lagSpikeDetector.getSpikes() - spikesAtWarmup, lagSpikeDetector.getSustained() - sustainedAtWarmup,
+                lagSpikeDetector.getAlertsSent() - alertsSentAtWarmup, lagSpikeDetector.getAlertsDelayed() - alertsDelayedAtWarmup);
+
+        out.println();
+        out.println("Work per run:");
+        for (Measurement measurement : List.of(tabUpdates, connections, completions, lookups, stats, alerts)) {
+            out.println("  " + measurement.format(threads != null));
+        }
+        if (historyStore.isRunning()) {
+            out.printf(Locale.ROOT, "  History store: %d samples dropped%n", historyStore.getDroppedSamples());
+        }
+    }
+
+    /**
+     * Sums up the tab list updates the fake players received.
+     *
+     * @return the number of tab list name updates
+     */
+    private long tabListUpdates() {
+        long updates = tabListUpdatesOfQuitPlayers;
+        for (Player player : online) {
+            updates += FakePlayers.getTabListUpdates(player);
+        }
+        return updates;
+    }
+
+    /**
+     * Decides how many times something with the given rate happens this tick.
+     *
+     * @param perSecond the rate per second
+     * @return the number of times
+     */
+    private int due(double perSecond) {
+        double expected = perSecond / TICKS_PER_SECOND;
+        return (int) expected + (random.nextDouble() < expected - (int) expected ? 1 : 0);
+    }
+
+    private SimulatedPlayer randomPlayer() {
+        return players.get(random.nextInt(players.size()));
+    }
+
+    private long allocatedBytes() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1_000_000.0);
+    }
+
+    /**
+     * A fake player and the network conditions that drive their synthetic ping.
+     */
+    private static final class SimulatedPlayer {
+        private final Player player;
+        private final int baseline;
+        private final int keepAlivePhase;
+        private int reported;
+        private int index;
+        private long spikeUntil;
+        private double spikeFactor;
+
+        SimulatedPlayer(Player player, int baseline, int keepAlivePhase) {
+            this.player = player;
+            this.baseline = baseline;
+            this.keepAlivePhase = keepAlivePhase;
+            this.reported = baseline;
+        }
+    }
+
+    /**
+     * The time, allocation and items of the runs of one part of the plugin.
+     */
+    private final class Measurement {
+        private final String name;
+        private long runs;
+        private long totalNanos;
+        private long maxNanos;
+        private long allocated;
+        private long items;
+
+        Measurement(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records a run that started at the given time and allocation counter.
+         *
+         * @return how long the run took, in nanoseconds
+         */
+        long record(long startNanos, long startAllocated, int items) {
+            long nanos = System.nanoTime() - startNanos;
+            if (measuring) {
+                runs++;
+                totalNanos += nanos;
+                maxNanos = Math.max(maxNanos, nanos);
+                allocated += allocatedBytes() - startAllocated;
+                this.items += items;
+            }
+            return nanos;
+        }
+
+        void reset() {
+            runs = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            allocated = 0;
+            items = 0;
+        }
+
+        String format(boolean withAllocation) {
+            if (runs == 0) {
+                return name + ": no runs";
+            }
+            String line = String.format(Locale.ROOT, "%s: %d runs, mean %.3f ms, max %.3f ms, %.1f items per run",
+                    name, runs, totalNanos / 1_000_000.0 / runs, maxNanos / 1_000_000.0, (double) items / runs);
+            return withAllocation ? line + String.format(Locale.ROOT, ", %.0f bytes per run", (double) allocated / runs) : line;
+        }
+    }
+
+    /**
+     * The command line options.
+     */
+    private static final class Options {
+        private int players = 500;
+        private int minutes = 10;
+        private int warmupSeconds = 60;
+        private int interval = 20;
+        private int shards = 1;
+        private PingDistribution distribution = PingDistribution.LOGNORMAL;
+        private Path trace;
+        private double churn = 0.05;
+        private int keepAliveSeconds = 15;
+        private double spikeChance = 0.01;
+        private boolean smoothing;
+        private PingSettings.DisplayMode displayMode = PingSettings.DisplayMode.NAME;
+        private double viewers = 1;
+        private double completionsPerSecond = 2;
+        private double lookupsPerSecond = 1;
+        private double statsPerSecond = 0.1;
+        private Path historyDir;
+        private long seed = 1;
+
+        /**
+         * Parses the command line.
+         *
+         * @param args the arguments
+         * @return the options
+         * @throws IllegalArgumentException if an option is unknown or has an invalid value
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--smoothing")) {
+                    options.smoothing = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+
+                String value = args[++i];
+                try {
+                    switch (option) {
+                        case "--players" -> options.players = atLeast(option, Integer.parseInt(value), 0);
+                        case "--minutes" -> options.minutes = atLeast(option, Integer.parseInt(value), 1);
+                        case "--warmup-seconds" -> options.warmupSeconds = atLeast(option, Integer.parseInt(value), 0);
+                        case "--interval" -> options.interval = atLeast(option, Integer.parseInt(value), 1);
+                        case "--shards" -> options.shards = atLeast(option, Integer.parseInt(value), 1);
+                        case "--distribution" -> options.distribution = PingDistribution.parse(value);
+                        case "--trace" -> options.trace = Path.of(value);
+                        case "--churn" -> options.churn = Double.parseDouble(value);
+                        case "--keepalive-seconds" -> options.keepAliveSeconds = atLeast(option, Integer.parseInt(value), 1);
+                        case "--spike-chance" -> options.spikeChance = Double.parseDouble(value);
+                        case "--completions-per-second" -> options.completionsPerSecond = Double.parseDouble(value);
+                        case "--lookups-per-second" -> options.lookupsPerSecond = Double.parseDouble(value);
+                        case "--stats-per-second" -> options.statsPerSecond = Double.parseDouble(value);
+                        case "--display-mode" -> options.displayMode = displayMode(value);
+                        case "--viewers" -> options.viewers = Double.parseDouble(value);
+                        case "--history-dir" -> options.historyDir = Path.of(value);
+                        case "--seed" -> options.seed = Long.parseLong(value);
+                        default -> throw new IllegalArgumentException("Unknown option " + option);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+                }
+            }
+            return options;
+        }
+
+        private static PingSettings.DisplayMode displayMode(String value) {
+            PingSettings.DisplayMode mode = PingSettings.DisplayMode.parse(value);
+            if (mode == null) {
+                throw new IllegalArgumentException("Unknown display mode " + value + ", expected name, team or viewer");
+            }
+            return mode;
+        }
+
+        private static int atLeast(String option, int value, int minimum) {
+            if (value < minimum) {
+                throw new IllegalArgumentException(option + " must be at least " + minimum);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package me.honeyberries.pingPlayer.simulator;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The synthetic distributions the baseline ping of a simulated player is drawn from when they join.
+ */
+public enum PingDistribution {
+
+    /**
+     * A long-tailed distribution around 45 ms, close to what a public server sees.
+     */
+    LOGNORMAL {
+        @Override
+        int baseline(Random random) {
+            return logNormal(random, 45, 0.7);
+        }
+    },
+
+    /**
+     * Every ping from 5 to 300 ms is equally likely, so every tier is well populated.
+     */
+    UNIFORM {
+        @Override
+        int baseline(Random random) {
+            return 5 + random.nextInt(296);
+        }
+    },
+
+    /**
+     * Three quarters of the players are close to the server and a quarter is overseas.
+     */
+    BIMODAL {
+        @Override
+        int baseline(Random random) {
+            return random.nextDouble() < 0.75 ? logNormal(random, 30, 0.3) : logNormal(random, 180, 0.3);
+        }
+    };
+
+    /**
+     * Draws the baseline ping of a joining player.
+     *
+     * @param random the random source
+     * @return the baseline ping in milliseconds
+     */
+    abstract int baseline(Random random);
+
+    /**
+     * Parses a distribution from its name, ignoring case.
+     *
+     * @param name the name, like lognormal
+     * @return the distribution
+     * @throws IllegalArgumentException if there is no distribution with that name
+     */
+    static PingDistribution parse(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown distribution " + name + ", expected lognormal, uniform or bimodal");
+        }
+    }
+
+    /**
+     * Draws from a log-normal distribution.
+     *
+     * @param random the random source
+     * @param median the median in milliseconds
+     * @param sigma  the standard deviation of the logarithm
+     * @return the value in milliseconds, between 1 and 2000
+     */
+    private static int logNormal(Random random, double median, double sigma) {
+        double value = median * Math.exp(sigma * random.nextGaussian());
+        return (int) Math.max(1, Math.min(2000, Math.round(value)));
+    }
+}
@@ -0,0 +1,101 @@
+package me.honeyberries.pingPlayer.simulator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recorded ping trace, replayed tick by tick.
+ * <p>
+ * A trace is a CSV file with one event per line: {@code tick,name,ping} sets the ping a player reports
+ * from that tick on, and {@code tick,name,quit} makes the player leave. A player joins with their first ping event.
+ * Events must be sorted by tick; empty lines and lines starting with {@code #} are ignored.
+ */
+final class PingTrace {
+
+    // The ping of a quit event
+    static final int QUIT = -1;
+
+    private final List<Event> events;
+    private int cursor;
+
+    private PingTrace(List<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * Loads a trace file.
+     *
+     * @param file the trace file
+     * @return the trace
+     * @throws IOException              if the file could not be read
+     * @throws IllegalArgumentException if a line is malformed or the events are not sorted by tick
+     */
+    static PingTrace load(Path file) throws IOException {
+        List<Event> events = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split(",");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException(file + ":" + (i + 1) + ": expected tick,name,ping or tick,name,quit");
+            }
+
+            try {
+                long tick = Long.parseLong(fields[0].strip());
+                String name = fields[1].strip();
+                String value = fields[2].strip();
+                int ping = value.equalsIgnoreCase("quit") ? QUIT : Integer.parseInt(value);
+                if (tick < 0 || ping < QUIT || name.isEmpty()) {
+                    throw new NumberFormatException();
+                }
+                if (!events.isEmpty() && tick < events.get(events.size() - 1).tick()) {
+                    throw new IllegalArgumentException(file + ":" + (i + 1) + ": events must be sorted by tick");
+                }
+                events.add(new Event(tick, name, ping));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(file + ":" + (i + 1) + ": invalid event " + line);
+            }
+        }
+        return new PingTrace(events);
+    }
+
+    /**
+     * Takes the events of the next tick, which must not be before the tick of the last call.
+     *
+     * @param tick the tick
+     * @param into the list the events are added to
+     */
+    void eventsAt(long tick, List<Event> into) {
+        while (cursor < events.size() && events.get(cursor).tick() <= tick) {
+            into.add(events.get(cursor++));
+        }
+    }
+
+    /**
+     * Gets the tick of the last event.
+     *
+     * @return the last tick, or 0 if the trace is empty
+     */
+    long lastTick() {
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).tick();
+    }
+
+    /**
+     * One line of a trace.
+     *
+     * @param tick the tick of the event
+     * @param name the player name
+     * @param ping the reported ping in milliseconds, or {@link #QUIT} if the player leaves
+     */
+    record Event(long tick, String name, int ping) {
+    }
+}